@@ -12,32 +12,47 @@ import com.artillexstudios.axapi.nms.NMSHandlers;
 import com.artillexstudios.axapi.utils.MessageUtils;
 import com.artillexstudios.axapi.utils.featureflags.FeatureFlags;
 import com.artillexstudios.axgraves.commands.CommandManager;
+import com.artillexstudios.axgraves.config.Settings;
 import com.artillexstudios.axgraves.grave.Grave;
+import com.artillexstudios.axgraves.grave.GraveCreator;
+import com.artillexstudios.axgraves.grave.GraveHologram;
 import com.artillexstudios.axgraves.grave.GravePlaceholders;
 import com.artillexstudios.axgraves.grave.SpawnedGraves;
 import com.artillexstudios.axgraves.listeners.DeathListener;
+import com.artillexstudios.axgraves.listeners.GraveInventoryListener;
+import com.artillexstudios.axgraves.listeners.GraveViewerListener;
 import com.artillexstudios.axgraves.listeners.PlayerInteractListener;
+import com.artillexstudios.axgraves.listeners.PlayerListener;
+import com.artillexstudios.axgraves.listeners.WorldListener;
 import com.artillexstudios.axgraves.schedulers.SaveGraves;
 import com.artillexstudios.axgraves.schedulers.TickGraves;
+import com.artillexstudios.axgraves.storage.GraveStorage;
 import com.artillexstudios.axgraves.utils.UpdateNotifier;
 import org.bstats.bukkit.Metrics;
 
 import java.io.File;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 public final class AxGraves extends AxPlugin {
     private static AxPlugin instance;
     public static Config CONFIG;
     public static Config LANG;
     public static MessageUtils MESSAGEUTILS;
-    public static ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    public static ScheduledExecutorService EXECUTOR = createExecutor();
     private static AxMetrics metrics;
 
     public static AxPlugin getInstance() {
         return instance;
     }
 
+    private static ScheduledExecutorService createExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // graves cancel their expiry when they go away early, don't keep those tasks queued until they were due
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
     public void enable() {
         instance = this;
 
@@ -48,6 +63,9 @@ public final class AxGraves extends AxPlugin {
         CONFIG = new Config(new File(getDataFolder(), "config.yml"), getResource("config.yml"), GeneralSettings.builder().setUseDefaults(false).build(), LoaderSettings.builder().setAutoUpdate(true).build(), DumperSettings.DEFAULT, UpdaterSettings.builder().setVersioning(new BasicVersioning("version")).build());
         LANG = new Config(new File(getDataFolder(), "messages.yml"), getResource("messages.yml"), GeneralSettings.builder().setUseDefaults(false).build(), LoaderSettings.builder().setAutoUpdate(true).build(), DumperSettings.DEFAULT, UpdaterSettings.builder().setVersioning(new BasicVersioning("version")).build());
 
+        Settings.reload();
+        GraveHologram.reload();
+
         MESSAGEUTILS = new MessageUtils(LANG.getBackingDocument(), "prefix", CONFIG.getBackingDocument());
 
         // Log server version information for debugging
@@ -76,6 +94,10 @@ public final class AxGraves extends AxPlugin {
         // Register event listeners
         getServer().getPluginManager().registerEvents(new DeathListener(), this);
         getServer().getPluginManager().registerEvents(new PlayerInteractListener(), this);
+        getServer().getPluginManager().registerEvents(new GraveInventoryListener(), this);
+        getServer().getPluginManager().registerEvents(new GraveViewerListener(), this);
+        getServer().getPluginManager().registerEvents(new WorldListener(), this);
+        getServer().getPluginManager().registerEvents(new PlayerListener(), this);
 
         // Load commands
         CommandManager.load();
@@ -130,8 +152,11 @@ public final class AxGraves extends AxPlugin {
 
         // Clean up graves
         try {
+            GraveCreator.flush();
+
             for (Grave grave : SpawnedGraves.getGraves()) {
                 if (!CONFIG.getBoolean("save-graves.enabled", true)) grave.remove();
+                else if (!grave.getViewers().isEmpty()) GraveStorage.markItems(grave);
                 
                 // Safely remove entities and holograms
                 try {
@@ -154,7 +179,7 @@ public final class AxGraves extends AxPlugin {
         // Save graves if enabled
         if (CONFIG.getBoolean("save-graves.enabled", true)) {
             try {
-                SpawnedGraves.saveToFile();
+                GraveStorage.close();
                 getLogger().info("Saved graves to file");
             } catch (Exception e) {
                 getLogger().warning("Failed to save graves: " + e.getMessage());
@@ -175,7 +200,8 @@ public final class AxGraves extends AxPlugin {
     public void updateFlags() {
         FeatureFlags.USE_LEGACY_HEX_FORMATTER.set(true);
         FeatureFlags.PACKET_ENTITY_TRACKER_ENABLED.set(true);
-        FeatureFlags.HOLOGRAM_UPDATE_TICKS.set(5L);
+        // the despawn countdown only changes once a second
+        FeatureFlags.HOLOGRAM_UPDATE_TICKS.set(20L);
         FeatureFlags.ENABLE_PACKET_LISTENERS.set(true);
     }
 }
@@ -1,4 +1,28 @@
 package com.artillexstudios.axgraves.api;
 
+import com.artillexstudios.axgraves.storage.GraveStorage;
+import com.artillexstudios.axgraves.storage.GraveSummary;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 public class AxGravesAPI {
+
+    /**
+     * The saved graves of a player, oldest first when using the sqlite storage.
+     */
+    @NotNull
+    public static CompletableFuture<List<GraveSummary>> getSavedGraves(@NotNull UUID owner) {
+        return GraveStorage.findByOwner(owner);
+    }
+
+    /**
+     * The saved graves in the given chunk range of a world, bounds included.
+     */
+    @NotNull
+    public static CompletableFuture<List<GraveSummary>> getSavedGraves(@NotNull UUID world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        return GraveStorage.findInArea(world, minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+    }
 }
@@ -1,6 +1,7 @@
 package com.artillexstudios.axgraves.commands.subcommands;
 
 import com.artillexstudios.axapi.utils.StringUtils;
+import com.artillexstudios.axgraves.config.Settings;
 import com.artillexstudios.axgraves.grave.Grave;
 import com.artillexstudios.axgraves.grave.SpawnedGraves;
 import com.artillexstudios.axgraves.utils.LocationUtils;
@@ -11,11 +12,11 @@ import org.bukkit.Location;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
 import static com.artillexstudios.axgraves.AxGraves.LANG;
 import static com.artillexstudios.axgraves.AxGraves.MESSAGEUTILS;
 
@@ -30,13 +31,11 @@ public enum List {
 
         MESSAGEUTILS.sendFormatted(sender, LANG.getString("grave-list.header"));
 
-        int dTime = CONFIG.getInt("despawn-time-seconds", 180);
-        for (Grave grave : SpawnedGraves.getGraves()) {
-            // skip grave if player doesn't have permission to view others' graves
-            if (sender instanceof Player player && !grave.getPlayer().getUniqueId().equals(player.getUniqueId())) {
-                if (!sender.hasPermission("axgraves.list.other")) continue;
-            }
+        // players without permission to view others' graves only get their own
+        final Collection<Grave> graves = sender instanceof Player player && !sender.hasPermission("axgraves.list.other") ? SpawnedGraves.getGraves(player.getUniqueId()) : SpawnedGraves.getGraves();
 
+        int dTime = Settings.get().despawnTimeSeconds;
+        for (Grave grave : graves) {
             final Location l = grave.getLocation();
 
             final Map<String, String> map = Map.of(
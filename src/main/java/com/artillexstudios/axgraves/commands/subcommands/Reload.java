@@ -1,9 +1,12 @@
 package com.artillexstudios.axgraves.commands.subcommands;
 
+import com.artillexstudios.axgraves.config.Settings;
 import com.artillexstudios.axgraves.grave.Grave;
+import com.artillexstudios.axgraves.grave.GraveHologram;
 import com.artillexstudios.axgraves.grave.GravePlaceholders;
 import com.artillexstudios.axgraves.grave.SpawnedGraves;
 import com.artillexstudios.axgraves.schedulers.SaveGraves;
+import com.artillexstudios.axgraves.utils.LimitUtils;
 import org.bukkit.command.CommandSender;
 
 import java.util.Map;
@@ -24,19 +27,25 @@ public enum Reload {
             return;
         }
 
+        Settings.reload();
+        LimitUtils.invalidateAll();
+
         if (!LANG.reload()) {
             MESSAGEUTILS.sendFormatted(sender, errorMsg, Map.of("%file%", "messages.yml"));
             return;
         }
 
+        GraveHologram.reload();
+        GravePlaceholders.reload();
+
         EXECUTOR.execute(() -> {
             for (Grave grave : SpawnedGraves.getGraves()) {
                 grave.update();
+                grave.scheduleExpiry();
                 grave.updateHologram();
             }
         });
 
-        GravePlaceholders.reload();
         SaveGraves.start();
 
         MESSAGEUTILS.sendLang(sender, "reload.success");
@@ -7,6 +7,7 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -17,7 +18,8 @@ public enum Teleport {
 
     public void execute(Player sender, World world, Double x, Double y, Double z) {
         if (world == null || x == null || y == null || z == null) {
-            Grave grave = SpawnedGraves.getGraves().stream().filter(gr -> gr.getPlayer().getUniqueId().equals(sender.getUniqueId())).findAny().orElse(null);
+            NavigableSet<Grave> graves = SpawnedGraves.getGraves(sender.getUniqueId());
+            Grave grave = graves.isEmpty() ? null : graves.first();
             if (grave == null) {
                 MESSAGEUTILS.sendLang(sender, "grave-list.no-graves");
                 return;
@@ -27,8 +29,7 @@ public enum Teleport {
         }
 
         final Location location = new Location(world, x, y, z);
-        Optional<Grave> grave = SpawnedGraves.getGraves().stream()
-                .filter(gr -> gr.getPlayer().getUniqueId().equals(sender.getUniqueId()))
+        Optional<Grave> grave = SpawnedGraves.getGraves(sender.getUniqueId()).stream()
                 .filter(gr -> Objects.equals(gr.getLocation().getWorld(), location.getWorld()))
                 .filter(gr -> gr.getLocation().distanceSquared(location) < 1)
                 .findAny();
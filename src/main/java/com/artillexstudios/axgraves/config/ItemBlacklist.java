@@ -0,0 +1,101 @@
+package com.artillexstudios.axgraves.config;
+
+import com.artillexstudios.axapi.libs.boostedyaml.block.implementation.Section;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * The {@code blacklisted-items} rules, compiled once per (re)load. Rules that only name a material are a set lookup,
+ * the meta of an item is only fetched when a rule about its name, lore or model could match it.
+ */
+public class ItemBlacklist {
+    private final EnumSet<Material> materials = EnumSet.noneOf(Material.class);
+    private final List<Rule> rules = new ArrayList<>();
+
+    ItemBlacklist(@Nullable Section section) {
+        if (section == null) return;
+
+        for (String key : section.getRoutesAsStrings(false)) {
+            final Section rule = section.getSection(key);
+            if (rule == null) continue;
+
+            Material material = null;
+            final String materialName = rule.getString("material");
+            if (materialName != null) {
+                material = Material.getMaterial(materialName.toUpperCase());
+                if (material == null) {
+                    Bukkit.getLogger().warning("[AxGraves] Unknown material in blacklisted-items." + key + ": " + materialName);
+                    continue;
+                }
+            }
+
+            final String name = rule.getString("name-contains");
+            final String lore = rule.getString("lore-contains");
+            final Integer model = rule.contains("custom-model-data") ? rule.getInt("custom-model-data") : null;
+
+            if (name == null && lore == null && model == null) {
+                if (material != null) materials.add(material);
+                continue;
+            }
+            rules.add(new Rule(material, name, lore, model));
+        }
+    }
+
+    public boolean isBlacklisted(@Nullable ItemStack it) {
+        if (it == null) return false;
+
+        final Material type = it.getType();
+        if (materials.contains(type)) return true;
+        if (rules.isEmpty()) return false;
+
+        ItemMeta meta = null;
+        boolean fetched = false;
+        for (Rule rule : rules) {
+            if (rule.material != null && rule.material != type) continue;
+            if (!fetched) {
+                meta = it.hasItemMeta() ? it.getItemMeta() : null;
+                fetched = true;
+            }
+            if (rule.matches(meta)) return true;
+        }
+        return false;
+    }
+
+    private static class Rule {
+        private final Material material;
+        private final String name;
+        private final String lore;
+        private final Integer model;
+
+        private Rule(Material material, String name, String lore, Integer model) {
+            this.material = material;
+            this.name = name;
+            this.lore = lore;
+            this.model = model;
+        }
+
+        private boolean matches(@Nullable ItemMeta meta) {
+            if (name != null) {
+                final String displayName = meta != null && meta.hasDisplayName() ? meta.getDisplayName() : "";
+                if (!displayName.contains(name)) return false;
+            }
+
+            if (lore != null) {
+                final List<String> lines = meta != null && meta.hasLore() ? meta.getLore() : null;
+                if (lines == null || lines.stream().noneMatch(line -> line.contains(lore))) return false;
+            }
+
+            if (model != null) {
+                if (meta == null || !meta.hasCustomModelData() || meta.getCustomModelData() != model) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.artillexstudios.axgraves.config;
+
+import com.artillexstudios.axapi.libs.boostedyaml.block.implementation.Section;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+
+/**
+ * The config values read on every death, tick or click, parsed once per (re)load.
+ * A snapshot never changes, a reload publishes a new one.
+ */
+public class Settings {
+    private static volatile Settings current;
+
+    public final int despawnTimeSeconds;
+    public final boolean despawnWhenEmpty;
+    public final boolean autoRotationEnabled;
+    public final float autoRotationSpeed;
+    public final boolean rotateHead360;
+    public final float headHeight;
+    public final float hologramHeight;
+    public final int hologramUpdateTicks;
+    public final int headRenderDistance;
+    public final int hologramRenderDistance;
+    public final boolean interactOnlyOwn;
+    public final boolean enableInstantPickup;
+    public final boolean instantPickupOnlyOwn;
+    public final boolean autoEquipArmor;
+    public final boolean dropItems;
+    public final boolean droppedItemVelocity;
+    public final Set<String> disabledWorlds;
+    public final boolean overrideKeepInventory;
+    public final Set<String> blacklistedDeathCauses;
+    public final boolean storeXp;
+    public final float xpKeepPercentage;
+    public final int graveLimit;
+    public final List<String> graveItemOrder;
+    public final int graveSpawnMillisPerTick;
+    public final boolean saveGraves;
+    public final int loadGravesPerTick;
+    public final int logFlushMillis;
+    public final ItemBlacklist blacklist;
+    private final Map<String, HeightLimit> heightLimits;
+
+    private Settings() {
+        despawnTimeSeconds = CONFIG.getInt("despawn-time-seconds", 180);
+        despawnWhenEmpty = CONFIG.getBoolean("despawn-when-empty", true);
+        autoRotationEnabled = CONFIG.getBoolean("auto-rotation.enabled", false);
+        autoRotationSpeed = CONFIG.getFloat("auto-rotation.speed", 10f);
+        rotateHead360 = CONFIG.getBoolean("rotate-head-360", true);
+        headHeight = CONFIG.getFloat("head-height", -1.2f);
+        hologramHeight = CONFIG.getFloat("hologram-height", 0.75f);
+        hologramUpdateTicks = Math.max(1, CONFIG.getInt("holograms.update-ticks", 20));
+        headRenderDistance = Math.max(-1, CONFIG.getInt("render-distance.head", 48));
+        hologramRenderDistance = Math.max(-1, CONFIG.getInt("render-distance.hologram", 16));
+        interactOnlyOwn = CONFIG.getBoolean("interact-only-own", false);
+        enableInstantPickup = CONFIG.getBoolean("enable-instant-pickup", true);
+        instantPickupOnlyOwn = CONFIG.getBoolean("instant-pickup-only-own", false);
+        autoEquipArmor = CONFIG.getBoolean("auto-equip-armor", true);
+        dropItems = CONFIG.getBoolean("drop-items", true);
+        droppedItemVelocity = CONFIG.getBoolean("dropped-item-velocity", true);
+        disabledWorlds = copyOf(CONFIG.getStringList("disabled-worlds"));
+        overrideKeepInventory = CONFIG.getBoolean("override-keep-inventory", true);
+        blacklistedDeathCauses = copyOf(CONFIG.getStringList("blacklisted-death-causes"));
+        storeXp = CONFIG.getBoolean("store-xp", true);
+        xpKeepPercentage = CONFIG.getFloat("xp-keep-percentage", 1f);
+        graveLimit = CONFIG.getInt("grave-limit", -1);
+        graveItemOrder = CONFIG.getStringList("grave-item-order") == null ? List.of() : List.copyOf(CONFIG.getStringList("grave-item-order"));
+        graveSpawnMillisPerTick = Math.max(0, CONFIG.getInt("grave-spawn-millis-per-tick", 5));
+        saveGraves = CONFIG.getBoolean("save-graves.enabled", true);
+        loadGravesPerTick = Math.max(1, CONFIG.getInt("save-graves.load-graves-per-tick", 50));
+        logFlushMillis = CONFIG.getInt("save-graves.log-flush-millis", 250);
+        blacklist = new ItemBlacklist(CONFIG.getSection("blacklisted-items"));
+
+        final Map<String, HeightLimit> limits = new HashMap<>();
+        final Section section = CONFIG.getSection("spawn-height-limits");
+        if (section != null) {
+            for (String world : section.getRoutesAsStrings(false)) {
+                final Section limit = section.getSection(world);
+                if (limit == null) continue;
+                limits.put(world, new HeightLimit(limit.getDouble("min"), limit.getDouble("max")));
+            }
+        }
+        heightLimits = Map.copyOf(limits);
+    }
+
+    /**
+     * Parses the config again, call after {@code CONFIG} was (re)loaded.
+     */
+    public static void reload() {
+        current = new Settings();
+    }
+
+    @NotNull
+    public static Settings get() {
+        return current;
+    }
+
+    /**
+     * The configured spawn height limit of a world, null if it uses the defaults of its environment.
+     */
+    @Nullable
+    public HeightLimit getHeightLimit(@NotNull String world) {
+        return heightLimits.get(world);
+    }
+
+    private static Set<String> copyOf(List<String> list) {
+        return list == null ? Set.of() : Set.copyOf(list);
+    }
+
+    public static class HeightLimit {
+        public final double min;
+        public final double max;
+
+        private HeightLimit(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
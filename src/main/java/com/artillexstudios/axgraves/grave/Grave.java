@@ -5,18 +5,19 @@ import com.artillexstudios.axapi.hologram.HologramType;
 import com.artillexstudios.axapi.hologram.HologramTypes;
 import com.artillexstudios.axapi.hologram.page.HologramPage;
 import com.artillexstudios.axapi.items.WrappedItemStack;
-import com.artillexstudios.axapi.libs.boostedyaml.block.implementation.Section;
 import com.artillexstudios.axapi.nms.NMSHandlers;
 import com.artillexstudios.axapi.packet.wrapper.serverbound.ServerboundInteractWrapper;
 import com.artillexstudios.axapi.packetentity.PacketEntity;
 import com.artillexstudios.axapi.packetentity.meta.entity.ArmorStandMeta;
-import com.artillexstudios.axapi.packetentity.meta.entity.DisplayMeta;
 import com.artillexstudios.axapi.packetentity.meta.entity.TextDisplayMeta;
 import com.artillexstudios.axapi.scheduler.Scheduler;
 import com.artillexstudios.axapi.utils.EquipmentSlot;
 import com.artillexstudios.axapi.utils.StringUtils;
 import com.artillexstudios.axgraves.api.events.GraveInteractEvent;
 import com.artillexstudios.axgraves.api.events.GraveOpenEvent;
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.storage.GraveStorage;
+import com.artillexstudios.axgraves.storage.ItemPayload;
 import com.artillexstudios.axgraves.utils.BlacklistUtils;
 import com.artillexstudios.axgraves.utils.ExperienceUtils;
 import com.artillexstudios.axgraves.utils.InventoryUtils;
@@ -25,41 +26,118 @@ import com.artillexstudios.axgraves.utils.Utils;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.enchantments.EnchantmentTarget;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.ExperienceOrb;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import static com.artillexstudios.axgraves.AxGraves.EXECUTOR;
 import static com.artillexstudios.axgraves.AxGraves.LANG;
 import static com.artillexstudios.axgraves.AxGraves.MESSAGEUTILS;
 
-public class Grave {
+public class Grave implements InventoryHolder {
     private static final Vector ZERO_VECTOR = new Vector(0, 0, 0);
+    private final UUID id;
     private final long spawned;
     private final Location location;
     private final OfflinePlayer player;
     private final String playerName;
-    private final Inventory gui;
+    private volatile Inventory gui = null;
+    private byte[] storedItems = null;
+    private volatile int itemCount = 0;
+    private volatile boolean recountQueued = false;
     private int storedXP;
-    private final PacketEntity entity;
+    private PacketEntity entity;
     private Hologram hologram;
+    private volatile HologramPage<String, HologramType<String>> hologramPage;
+    private String hologramText;
     private boolean removed = false;
+    private volatile boolean dormant = false;
+    private ScheduledFuture<?> expiry = null;
 
     public Grave(Location loc, @NotNull OfflinePlayer offlinePlayer, @NotNull List<ItemStack> items, int storedXP, long date) {
+        this(UUID.randomUUID(), loc, offlinePlayer, items, storedXP, date);
+    }
+
+    public Grave(@NotNull UUID id, Location loc, @NotNull OfflinePlayer offlinePlayer, @NotNull List<ItemStack> items, int storedXP, long date) {
+        this(id, loc, offlinePlayer, items, storedXP, date, false);
+    }
+
+    /**
+     * A new grave with items that already went through {@link #prepareItems(OfflinePlayer, List)} if prepared is true.
+     */
+    Grave(Location loc, @NotNull OfflinePlayer offlinePlayer, @NotNull List<ItemStack> items, int storedXP, long date, boolean prepared) {
+        this(UUID.randomUUID(), loc, offlinePlayer, items, storedXP, date, prepared);
+    }
+
+    private Grave(UUID id, Location loc, OfflinePlayer offlinePlayer, List<ItemStack> items, int storedXP, long date, boolean prepared) {
+        this(id, loc, offlinePlayer, storedXP, date);
+        if (!prepared) items = prepareItems(offlinePlayer, items);
+
+        Player pl = offlinePlayer.getPlayer();
+        if (pl != null) {
+            if (LANG.getBoolean("death-message.enabled", false)) {
+                MESSAGEUTILS.sendLang(pl, "death-message.message", Map.of("%world%", LocationUtils.getWorldName(location.getWorld()), "%x%", "" + location.getBlockX(), "%y%", "" + location.getBlockY(), "%z%", "" + location.getBlockZ()));
+            }
+        }
+        this.gui = createGui(items);
+        this.itemCount = count(gui);
+        this.entity = createEntity();
+
+        updateHologram();
+    }
+
+    /**
+     * Restores a saved grave. The items stay serialized until something needs them, see {@link #getGui()}.
+     */
+    public Grave(@NotNull UUID id, Location loc, @NotNull OfflinePlayer offlinePlayer, byte[] items, int itemCount, int storedXP, long date) {
+        this(id, loc, offlinePlayer, storedXP, date);
+        this.storedItems = items;
+        this.itemCount = itemCount;
+        // spawned by wake() once its chunk is loaded
+        this.dormant = true;
+    }
+
+    private Grave(UUID id, Location loc, OfflinePlayer offlinePlayer, int storedXP, long date) {
+        this.id = id;
+        this.location = LocationUtils.getCenterOf(loc, true, false);
+        this.player = offlinePlayer;
+        this.playerName = offlinePlayer.getName() == null ? LANG.getString("unknown-player", "???") : offlinePlayer.getName();
+        this.storedXP = storedXP;
+        this.spawned = date;
+
+        LocationUtils.clampLocation(location);
+    }
+
+    /**
+     * Copies the items that can go in a grave, in the order of the config while the inventory they came from is still
+     * around.
+     */
+    static List<ItemStack> prepareItems(OfflinePlayer offlinePlayer, List<ItemStack> items) {
+        items = filterItems(items);
+
+        Player pl = offlinePlayer.getPlayer();
+        if (pl != null) items = InventoryUtils.reorderInventory(pl.getInventory(), items);
+        return items;
+    }
+
+    private static List<ItemStack> filterItems(List<ItemStack> items) {
         items = new ArrayList<>(items);
         items.removeIf(it -> {
             if (it == null) return true;
@@ -67,42 +145,37 @@ public class Grave {
             return false;
         });
         items.replaceAll(ItemStack::clone); // clone all items
+        return items;
+    }
 
-        this.location = LocationUtils.getCenterOf(loc, true, false);
-        this.player = offlinePlayer;
-        this.playerName = offlinePlayer.getName() == null ? LANG.getString("unknown-player", "???") : offlinePlayer.getName();
-        this.storedXP = storedXP;
-        this.spawned = date;
-        this.gui = Bukkit.createInventory(
-                null,
+    private Inventory createGui(List<ItemStack> items) {
+        final Inventory inventory = Bukkit.createInventory(
+                this,
                 InventoryUtils.getRequiredRows(items.size()) * 9,
                 StringUtils.formatToString(LANG.getString("gui-name").replace("%player%", playerName))
         );
+        items.forEach(inventory::addItem);
+        return inventory;
+    }
 
-        LocationUtils.clampLocation(location);
-
-        Player pl = offlinePlayer.getPlayer();
-        if (pl != null) {
-            items = InventoryUtils.reorderInventory(pl.getInventory(), items);
-            if (LANG.getBoolean("death-message.enabled", false)) {
-                MESSAGEUTILS.sendLang(pl, "death-message.message", Map.of("%world%", LocationUtils.getWorldName(location.getWorld()), "%x%", "" + location.getBlockX(), "%y%", "" + location.getBlockY(), "%z%", "" + location.getBlockZ()));
-            }
-        }
-        items.forEach(gui::addItem);
-
+    private PacketEntity createEntity() {
         // Create packet entity with error handling for NMS compatibility
         PacketEntity tempEntity = null;
         try {
             if (NMSHandlers.getNmsHandler() != null) {
-                tempEntity = NMSHandlers.getNmsHandler().createEntity(EntityType.ARMOR_STAND, location.clone().add(0, 1 + CONFIG.getFloat("head-height", -1.2f), 0));
-                tempEntity.setItem(EquipmentSlot.HELMET, WrappedItemStack.wrap(Utils.getPlayerHead(offlinePlayer)));
+                tempEntity = NMSHandlers.getNmsHandler().createEntity(EntityType.ARMOR_STAND, location.clone().add(0, 1 + Settings.get().headHeight, 0));
+                final PacketEntity created = tempEntity;
+                tempEntity.setItem(EquipmentSlot.HELMET, WrappedItemStack.wrap(Utils.getPlayerHead(player, head -> Scheduler.get().runAt(location, () -> {
+                    // the skin of an offline owner arrived, unless the head was replaced meanwhile
+                    if (entity == created && !removed) created.setItem(EquipmentSlot.HELMET, WrappedItemStack.wrap(head));
+                }))));
                 final ArmorStandMeta meta = (ArmorStandMeta) tempEntity.meta();
                 meta.small(true);
                 meta.invisible(true);
                 meta.setNoBasePlate(false);
                 tempEntity.spawn();
 
-                if (CONFIG.getBoolean("rotate-head-360", true)) {
+                if (Settings.get().rotateHead360) {
                     tempEntity.location().setYaw(location.getYaw());
                     tempEntity.teleport(tempEntity.location());
                 } else {
@@ -118,27 +191,66 @@ public class Grave {
             Bukkit.getLogger().warning("[AxGraves] This may be due to NMS compatibility issues. Grave will be created without visual representation.");
             e.printStackTrace();
         }
-        this.entity = tempEntity;
-
-        updateHologram();
+        return tempEntity;
     }
 
+    /**
+     * Removes the grave if it ran out of time or got emptied. Expiry is normally handled by {@link #scheduleExpiry()},
+     * this is only needed after something changed.
+     */
     public void update() {
+        final Settings settings = Settings.get();
         int items = countItems();
 
-        int time = CONFIG.getInt("despawn-time-seconds", 180);
+        int time = settings.despawnTimeSeconds;
         boolean outOfTime = time * 1_000L <= (System.currentTimeMillis() - spawned);
-        boolean despawn = CONFIG.getBoolean("despawn-when-empty", true);
         boolean empty = items == 0 && storedXP == 0;
-        if ((time != -1 && outOfTime) || (despawn && empty)) {
-            Scheduler.get().runAt(location, this::remove);
+        if (settings.despawnWhenEmpty && empty) {
+            remove();
+            return;
+        }
+        if (time != -1 && outOfTime) {
+            expire();
             return;
         }
+        refreshHologram();
+    }
 
+    private void expire() {
+        // nothing can be dropped into an unloaded chunk, waking up will expire it
+        if (dormant && (storedXP != 0 || (countItems() != 0 && Settings.get().dropItems))) return;
+        remove();
+    }
+
+    /**
+     * Schedules the removal of the grave for when its despawn time is up, replacing the previous schedule.
+     */
+    public synchronized void scheduleExpiry() {
+        cancelExpiry();
+        if (removed) return;
+
+        int time = Settings.get().despawnTimeSeconds;
+        if (time == -1) return;
+
+        long delay = spawned + time * 1_000L - System.currentTimeMillis();
+        try {
+            expiry = EXECUTOR.schedule(() -> Scheduler.get().runAt(location, this::expire), Math.max(0, delay), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // shutting down
+        }
+    }
+
+    private synchronized void cancelExpiry() {
+        if (expiry == null) return;
+        expiry.cancel(false);
+        expiry = null;
+    }
+
+    public void rotate() {
         // Only update rotation if entity exists (may be null if NMS failed)
-        if (entity != null && CONFIG.getBoolean("auto-rotation.enabled", false)) {
+        if (entity != null && !dormant && !removed) {
             try {
-                entity.location().setYaw(entity.location().getYaw() + CONFIG.getFloat("auto-rotation.speed", 10f));
+                entity.location().setYaw((entity.location().getYaw() + Settings.get().autoRotationSpeed) % 360);
                 entity.teleport(entity.location());
             } catch (Exception e) {
                 Bukkit.getLogger().warning("[AxGraves] Failed to update grave rotation: " + e.getMessage());
@@ -147,7 +259,8 @@ public class Grave {
     }
 
     public void interact(@NotNull Player opener, ServerboundInteractWrapper.InteractionHand slot) {
-        if (CONFIG.getBoolean("interact-only-own", false) && !opener.getUniqueId().equals(player.getUniqueId()) && !opener.hasPermission("axgraves.admin")) {
+        final Settings settings = Settings.get();
+        if (settings.interactOnlyOwn && !opener.getUniqueId().equals(player.getUniqueId()) && !opener.hasPermission("axgraves.admin")) {
             MESSAGEUTILS.sendLang(opener, "interact.not-your-grave");
             return;
         }
@@ -159,51 +272,19 @@ public class Grave {
         if (this.storedXP != 0) {
             ExperienceUtils.changeExp(opener, this.storedXP);
             this.storedXP = 0;
+            GraveStorage.markXp(this);
+            update();
+            // a grave holding only xp is gone now
+            if (removed) return;
         }
 
         if (slot != null && slot.equals(ServerboundInteractWrapper.InteractionHand.MAIN_HAND) && opener.isSneaking()) {
             if (opener.getGameMode() == GameMode.SPECTATOR) return;
-            if (!CONFIG.getBoolean("enable-instant-pickup", true)) return;
-            if (CONFIG.getBoolean("instant-pickup-only-own", false) && !opener.getUniqueId().equals(player.getUniqueId())) return;
-
-            for (ItemStack it : gui.getContents()) {
-                if (it == null) continue;
-
-                if (CONFIG.getBoolean("auto-equip-armor", true)) {
-                    if ((EnchantmentTarget.ARMOR_HEAD.includes(it) || it.getType().equals(Material.TURTLE_HELMET)) && opener.getInventory().getHelmet() == null) {
-                        opener.getInventory().setHelmet(it);
-                        it.setAmount(0);
-                        continue;
-                    }
-
-                    if ((EnchantmentTarget.ARMOR_TORSO.includes(it) || it.getType().equals(Material.ELYTRA)) && opener.getInventory().getChestplate() == null) {
-                        opener.getInventory().setChestplate(it);
-                        it.setAmount(0);
-                        continue;
-                    }
-
-                    if (EnchantmentTarget.ARMOR_LEGS.includes(it) && opener.getInventory().getLeggings() == null) {
-                        opener.getInventory().setLeggings(it);
-                        it.setAmount(0);
-                        continue;
-                    }
-
-                    if (EnchantmentTarget.ARMOR_FEET.includes(it) && opener.getInventory().getBoots() == null) {
-                        opener.getInventory().setBoots(it);
-                        it.setAmount(0);
-                        continue;
-                    }
-                }
-
-                final Collection<ItemStack> ar = opener.getInventory().addItem(it).values();
-                if (ar.isEmpty()) {
-                    it.setAmount(0);
-                    continue;
-                }
-
-                it.setAmount(ar.iterator().next().getAmount());
-            }
+            if (!settings.enableInstantPickup) return;
+            if (settings.instantPickupOnlyOwn && !opener.getUniqueId().equals(player.getUniqueId())) return;
 
+            itemCount = InventoryUtils.transfer(getGui(), opener.getInventory(), settings.autoEquipArmor);
+            GraveStorage.markItems(this);
             update();
             return;
         }
@@ -212,44 +293,85 @@ public class Grave {
         Bukkit.getPluginManager().callEvent(graveOpenEvent);
         if (graveOpenEvent.isCancelled()) return;
 
-        opener.openInventory(gui);
+        opener.openInventory(getGui());
     }
 
     public void updateHologram() {
+        if (dormant) return;
         try {
-            if (hologram != null) hologram.remove();
+            if (hologram != null) {
+                hologram.remove();
+                GraveVisibility.forgetHologram(this);
+            }
 
-            List<String> lines = LANG.getStringList("hologram");
+            final GraveHologram template = GraveHologram.get();
 
-            double hologramHeight = CONFIG.getFloat("hologram-height", 0.75f) + 1;
-            hologram = new Hologram(location.clone().add(0, getNewHeight(hologramHeight, lines.size(), 0.3f), 0));
+            double hologramHeight = Settings.get().hologramHeight + 1;
+            hologram = new Hologram(location.clone().add(0, getNewHeight(hologramHeight, template.getLines(), 0.3f), 0));
 
             HologramPage<String, HologramType<String>> page = hologram.createPage(HologramTypes.TEXT);
             page.getParameters().withParameter(Grave.class, this);
+            page.setEntityMetaHandler(m -> template.applyMeta((TextDisplayMeta) m));
 
-            Section section = CONFIG.getSection("holograms");
-            page.setEntityMetaHandler(m -> {
-                TextDisplayMeta meta = (TextDisplayMeta) m;
-                meta.seeThrough(section.getBoolean("see-through"));
-                meta.alignment(TextDisplayMeta.Alignment.valueOf(section.getString("alignment").toUpperCase()));
-                meta.backgroundColor(Integer.parseInt(section.getString("background-color"), 16));
-                meta.lineWidth(1000);
-                meta.billboardConstrain(DisplayMeta.BillboardConstrain.valueOf(section.getString("billboard").toUpperCase()));
-            });
-
-            page.setContent(String.join("<reset><br>", lines));
+            hologramText = template.render(this);
+            page.setContent(hologramText);
             page.spawn();
+            hologramPage = page;
         } catch (Exception e) {
             Bukkit.getLogger().warning("[AxGraves] Failed to update hologram for grave at " + location + ": " + e.getMessage());
             Bukkit.getLogger().warning("[AxGraves] This may be due to NMS compatibility issues.");
         }
     }
 
+    /**
+     * Renders the hologram text again, it is only sent if something in it changed.
+     */
+    public void refreshHologram() {
+        final HologramPage<String, HologramType<String>> page = hologramPage;
+        if (page == null || dormant || removed) return;
+
+        final String text = GraveHologram.get().render(this);
+        if (text.equals(hologramText)) return;
+        hologramText = text;
+        page.setContent(text);
+    }
+
     private static double getNewHeight(double y, int lines, float lineHeight) {
         return y - lineHeight * (lines - 1) + 0.25;
     }
 
+    /**
+     * The amount of non-empty slots, kept up to date by {@link #recount()}.
+     */
     public int countItems() {
+        return itemCount;
+    }
+
+    /**
+     * Counts the items again after the inventory changed, an emptied grave is removed right away.
+     * Must be called on the thread owning the grave.
+     */
+    public void recount() {
+        final Inventory gui = this.gui;
+        if (gui != null) itemCount = count(gui);
+        update();
+    }
+
+    /**
+     * Recounts on the next tick, once no matter how many changes happen until then.
+     * Inventory events fire before the change is applied, so they can't count right away.
+     */
+    public void queueRecount() {
+        if (recountQueued) return;
+        recountQueued = true;
+
+        Scheduler.get().runAt(location, () -> {
+            recountQueued = false;
+            recount();
+        });
+    }
+
+    private static int count(Inventory gui) {
         int am = 0;
         for (ItemStack it : gui.getContents()) {
             if (it == null) continue;
@@ -261,9 +383,11 @@ public class Grave {
     public void remove() {
         if (removed) return;
         removed = true;
+        cancelExpiry();
 
         Runnable runnable = () -> {
             SpawnedGraves.removeGrave(this);
+            GraveVisibility.forget(this);
             removeInventory();
 
             if (entity != null) entity.remove();
@@ -274,14 +398,66 @@ public class Grave {
         else Scheduler.get().runAt(location, runnable);
     }
 
+    /**
+     * Puts the grave to sleep while its chunk is unloaded: the head and hologram are gone and the items are kept
+     * serialized. The grave stays registered and saved.
+     */
+    public void sleep() {
+        if (dormant || removed) return;
+        dormant = true;
+        closeInventory();
+        GraveVisibility.forget(this);
+
+        if (entity != null) entity.remove();
+        if (hologram != null) hologram.remove();
+        entity = null;
+        hologram = null;
+        hologramPage = null;
+
+        synchronized (this) {
+            if (gui == null) return;
+            storedItems = ItemPayload.encode(gui.getContents());
+            gui = null;
+        }
+    }
+
+    /**
+     * Spawns the grave again once its chunk is loaded, a grave that ran out of time while sleeping expires now.
+     */
+    public void wake() {
+        if (!dormant || removed) return;
+        dormant = false;
+
+        entity = createEntity();
+        updateHologram();
+        update();
+    }
+
+    public boolean isDormant() {
+        return dormant;
+    }
+
+    /**
+     * Takes the grave out of the world without dropping anything, its state stays saved.
+     */
+    public void despawn() {
+        cancelExpiry();
+        closeInventory();
+        GraveVisibility.forget(this);
+
+        if (entity != null) entity.remove();
+        if (hologram != null) hologram.remove();
+    }
+
     public void removeInventory() {
         closeInventory();
 
-        if (CONFIG.getBoolean("drop-items", true)) {
-            for (ItemStack it : gui.getContents()) {
+        final Settings settings = Settings.get();
+        if (settings.dropItems) {
+            for (ItemStack it : getGui().getContents()) {
                 if (it == null) continue;
                 final Item item = location.getWorld().dropItem(location.clone(), it);
-                if (CONFIG.getBoolean("dropped-item-velocity", true)) continue;
+                if (settings.droppedItemVelocity) continue;
                 item.setVelocity(ZERO_VECTOR);
             }
         }
@@ -292,12 +468,26 @@ public class Grave {
     }
 
     private void closeInventory() {
-        final List<HumanEntity> viewers = new ArrayList<>(gui.getViewers());
-        for (HumanEntity viewer : viewers) {
+        for (HumanEntity viewer : getViewers()) {
             viewer.closeInventory();
         }
     }
 
+    /**
+     * Decodes the items of a restored grave into its inventory.
+     */
+    private synchronized void loadItems() {
+        if (gui != null) return;
+
+        gui = createGui(filterItems(Arrays.asList(ItemPayload.decode(storedItems))));
+        itemCount = count(gui);
+        storedItems = null;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
     public Location getLocation() {
         return location;
     }
@@ -310,10 +500,37 @@ public class Grave {
         return spawned;
     }
 
+    /**
+     * The inventory of the grave, restored graves decode their items on the first call.
+     */
     public Inventory getGui() {
+        if (gui == null) loadItems();
         return gui;
     }
 
+    @NotNull
+    @Override
+    public Inventory getInventory() {
+        return getGui();
+    }
+
+    /**
+     * The players looking into the grave, without decoding the items of a restored grave.
+     */
+    @NotNull
+    public List<HumanEntity> getViewers() {
+        final Inventory gui = this.gui;
+        if (gui == null) return List.of();
+        return new ArrayList<>(gui.getViewers());
+    }
+
+    /**
+     * The serialized items of a restored grave that were not needed yet, null once decoded.
+     */
+    public synchronized byte[] getSerializedItems() {
+        return gui == null ? storedItems : null;
+    }
+
     public int getStoredXP() {
         return storedXP;
     }
@@ -329,4 +546,8 @@ public class Grave {
     public String getPlayerName() {
         return playerName;
     }
+
+    public boolean isRemoved() {
+        return removed;
+    }
 }
@@ -0,0 +1,143 @@
+package com.artillexstudios.axgraves.grave;
+
+import com.artillexstudios.axapi.scheduler.Scheduler;
+import com.artillexstudios.axgraves.api.events.GraveSpawnEvent;
+import com.artillexstudios.axgraves.config.Settings;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spawns the graves of deaths over the next ticks, so a lot of players dying at once doesn't stall a single tick.
+ * The items are taken from the death right away, only building and spawning the grave waits for its turn.
+ */
+public class GraveCreator {
+    private static final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    // how long building a grave took lately, starts with a guess
+    private static final AtomicLong averageNanos = new AtomicLong(1_000_000);
+    private static boolean started = false;
+    private static int peak = 0;
+    private static int busyTicks = 0;
+
+    /**
+     * Queues a grave, the items are copied and put in order before this returns.
+     */
+    public static void create(@NotNull Player player, @NotNull Location location, @NotNull List<ItemStack> items, int xp) {
+        start();
+
+        pending.add(new Pending(player, location.clone(), Grave.prepareItems(player, items), xp, System.currentTimeMillis()));
+        queued.incrementAndGet();
+    }
+
+    /**
+     * The amount of graves waiting to be spawned.
+     */
+    public static int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Spawns everything still waiting, used when the plugin is disabled.
+     */
+    public static void flush() {
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            queued.decrementAndGet();
+            spawn(next);
+        }
+    }
+
+    private static synchronized void start() {
+        if (started) return;
+        started = true;
+
+        Scheduler.get().runTimer(GraveCreator::tick, 1, 1);
+    }
+
+    private static void tick() {
+        final int waiting = queued.get();
+        if (waiting == 0) return;
+
+        peak = Math.max(peak, waiting);
+        busyTicks++;
+
+        // graves are built on the thread owning their location, so the budget is spent on as many graves as it
+        // took recently, at least one per tick so a tiny budget can't stop graves from spawning
+        final long budget = Settings.get().graveSpawnMillisPerTick * 1_000_000L;
+        final long count = Math.max(1, budget / Math.max(1, averageNanos.get()));
+        for (long i = 0; i < count; i++) {
+            final Pending next = pending.poll();
+            if (next == null) break;
+            queued.decrementAndGet();
+            Scheduler.get().runAt(next.location, () -> {
+                final long start = System.nanoTime();
+                spawn(next);
+                final long took = System.nanoTime() - start;
+                averageNanos.updateAndGet(average -> (average * 7 + took) / 8);
+            });
+        }
+
+        if (queued.get() != 0) return;
+        if (busyTicks > 1) {
+            Bukkit.getLogger().info("[AxGraves] Spawned queued graves over " + busyTicks + " ticks (at most " + peak + " waiting)");
+        }
+        peak = 0;
+        busyTicks = 0;
+    }
+
+    private static void spawn(Pending next) {
+        Grave grave = null;
+        try {
+            grave = new Grave(next.location, next.player, next.items, next.xp, next.date, true);
+            SpawnedGraves.addGrave(grave);
+
+            final GraveSpawnEvent graveSpawnEvent = new GraveSpawnEvent(next.player, grave);
+            Bukkit.getPluginManager().callEvent(graveSpawnEvent);
+        } catch (Exception e) {
+            Bukkit.getLogger().severe("[AxGraves] Critical error creating grave for player " + next.player.getName());
+            Bukkit.getLogger().severe("[AxGraves] Error: " + e.getMessage());
+            e.printStackTrace();
+            // a registered grave holds the items, removing it drops them exactly once
+            if (grave != null && (grave.isRemoved() || SpawnedGraves.getGraves().contains(grave))) {
+                grave.remove();
+                return;
+            }
+
+            // the items were already taken from the death, don't let them disappear
+            for (ItemStack it : next.items) {
+                next.location.getWorld().dropItemNaturally(next.location, it);
+            }
+            if (next.xp > 0) {
+                ((ExperienceOrb) next.location.getWorld().spawnEntity(next.location, EntityType.EXPERIENCE_ORB)).setExperience(next.xp);
+            }
+            // never registered, only its head and hologram could be left over
+            if (grave != null) grave.despawn();
+        }
+    }
+
+    private static class Pending {
+        private final Player player;
+        private final Location location;
+        private final List<ItemStack> items;
+        private final int xp;
+        private final long date;
+
+        private Pending(Player player, Location location, List<ItemStack> items, int xp, long date) {
+            this.player = player;
+            this.location = location;
+            this.items = items;
+            this.xp = xp;
+            this.date = date;
+        }
+    }
+}
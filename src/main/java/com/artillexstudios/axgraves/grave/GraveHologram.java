@@ -0,0 +1,125 @@
+package com.artillexstudios.axgraves.grave;
+
+import com.artillexstudios.axapi.libs.boostedyaml.block.implementation.Section;
+import com.artillexstudios.axapi.packetentity.meta.entity.DisplayMeta;
+import com.artillexstudios.axapi.packetentity.meta.entity.TextDisplayMeta;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import static com.artillexstudios.axgraves.AxGraves.LANG;
+
+/**
+ * The hologram lines and display settings, parsed once per (re)load and shared by every grave.
+ * The grave placeholders are filled in by the plugin, so a hologram only has to be sent again when its text changed.
+ */
+public class GraveHologram {
+    private static volatile GraveHologram current;
+
+    private final List<Object> parts = new ArrayList<>();
+    private final int lines;
+    private final boolean timed;
+    private final boolean seeThrough;
+    private final TextDisplayMeta.Alignment alignment;
+    private final int backgroundColor;
+    private final DisplayMeta.BillboardConstrain billboard;
+
+    private GraveHologram() {
+        final List<String> text = LANG.getStringList("hologram");
+        lines = text.size();
+
+        final String content = String.join("<reset><br>", text);
+        int literal = 0;
+        boolean hasTime = false;
+        for (int i = content.indexOf('%'); i != -1; i = content.indexOf('%', i + 1)) {
+            final int end = content.indexOf('%', i + 1);
+            if (end == -1) break;
+
+            final Placeholder placeholder = Placeholder.of(content.substring(i + 1, end));
+            if (placeholder == null) continue;
+
+            if (i > literal) parts.add(content.substring(literal, i));
+            parts.add(placeholder);
+            hasTime |= placeholder == Placeholder.DESPAWN_TIME;
+            literal = end + 1;
+            i = end;
+        }
+        if (literal < content.length()) parts.add(content.substring(literal));
+        timed = hasTime;
+
+        final Section section = CONFIG.getSection("holograms");
+        seeThrough = section.getBoolean("see-through");
+        alignment = TextDisplayMeta.Alignment.valueOf(section.getString("alignment").toUpperCase());
+        backgroundColor = Integer.parseInt(section.getString("background-color"), 16);
+        billboard = DisplayMeta.BillboardConstrain.valueOf(section.getString("billboard").toUpperCase());
+    }
+
+    /**
+     * Parses the template again, call after {@code LANG} and {@code CONFIG} were (re)loaded.
+     */
+    public static void reload() {
+        current = new GraveHologram();
+    }
+
+    @NotNull
+    public static GraveHologram get() {
+        return current;
+    }
+
+    @NotNull
+    String render(@NotNull Grave grave) {
+        final StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Placeholder placeholder) builder.append(placeholder.render(grave));
+            else builder.append((String) part);
+        }
+        return builder.toString();
+    }
+
+    void applyMeta(@NotNull TextDisplayMeta meta) {
+        meta.seeThrough(seeThrough);
+        meta.alignment(alignment);
+        meta.backgroundColor(backgroundColor);
+        meta.lineWidth(1000);
+        meta.billboardConstrain(billboard);
+    }
+
+    int getLines() {
+        return lines;
+    }
+
+    /**
+     * If the text changes with time and has to be rendered again periodically.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    private enum Placeholder {
+        PLAYER,
+        XP,
+        ITEM,
+        DESPAWN_TIME;
+
+        private static Placeholder of(String name) {
+            return switch (name) {
+                case "player" -> PLAYER;
+                case "xp" -> XP;
+                case "item" -> ITEM;
+                case "despawn-time" -> DESPAWN_TIME;
+                default -> null;
+            };
+        }
+
+        private String render(Grave grave) {
+            return switch (this) {
+                case PLAYER -> grave.getPlayerName();
+                case XP -> String.valueOf(grave.getStoredXP());
+                case ITEM -> String.valueOf(grave.countItems());
+                case DESPAWN_TIME -> GravePlaceholders.formatDespawnTime(grave);
+            };
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.artillexstudios.axgraves.grave;
+
+import com.artillexstudios.axapi.scheduler.Scheduler;
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.storage.GraveData;
+import com.artillexstudios.axgraves.storage.GraveStorage;
+import com.artillexstudios.axgraves.storage.ItemPayload;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Restores saved graves without holding up the server. Storage is read on the save executor, graves saved without
+ * an item count are decoded on the common pool to count them, only spawning the graves happens on the thread owning their location,
+ * a limited amount per tick. Items stay serialized until the grave needs them.
+ */
+class GraveLoader {
+    private static final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private static boolean started = false;
+
+    static void load(@NotNull World world) {
+        start();
+
+        GraveStorage.load(world.getUID()).thenAccept(saved -> {
+            if (saved.isEmpty()) return;
+
+            final Progress progress = new Progress(world, saved.size());
+            for (GraveData data : saved) {
+                if (data.getItemCount() != -1) {
+                    pending.add(new Pending(progress, data, data.getItemCount()));
+                    continue;
+                }
+
+                CompletableFuture.supplyAsync(() -> countItems(data.getItems()), ForkJoinPool.commonPool()).whenComplete((itemCount, ex) -> {
+                    if (ex != null) {
+                        progress.fail(ex);
+                        return;
+                    }
+                    pending.add(new Pending(progress, data, itemCount));
+                });
+            }
+        });
+    }
+
+    private static int countItems(byte[] items) {
+        int am = 0;
+        for (ItemStack it : ItemPayload.decode(items)) {
+            if (it == null) continue;
+            am++;
+        }
+        return am;
+    }
+
+    private static synchronized void start() {
+        if (started) return;
+        started = true;
+
+        Scheduler.get().runTimer(GraveLoader::spawn, 1, 1);
+    }
+
+    private static void spawn() {
+        int budget = Settings.get().loadGravesPerTick;
+
+        Pending next;
+        while (budget-- > 0 && (next = pending.poll()) != null) {
+            final World world = next.progress.world;
+            final GraveData data = next.data;
+            final Location location = new Location(world, data.getX(), data.getY(), data.getZ(), data.getYaw(), 0);
+            // spawned by the thread owning the location
+            final Pending restored = next;
+            Scheduler.get().runAt(location, () -> restore(restored, location));
+        }
+    }
+
+    private static void restore(Pending next, Location location) {
+        // unloaded before its graves got their turn, they are still saved
+        if (!SpawnedGraves.isLoaded(next.progress.world)) return;
+
+        final GraveData data = next.data;
+        try {
+            SpawnedGraves.restoreGrave(new Grave(data.getId(), location, Bukkit.getOfflinePlayer(data.getOwner()), data.getItems(), next.itemCount, data.getXp(), data.getSpawned()));
+            next.progress.success();
+        } catch (Exception ex) {
+            next.progress.fail(ex);
+        }
+    }
+
+    private static class Pending {
+        private final Progress progress;
+        private final GraveData data;
+        private final int itemCount;
+
+        private Pending(Progress progress, GraveData data, int itemCount) {
+            this.progress = progress;
+            this.data = data;
+            this.itemCount = itemCount;
+        }
+    }
+
+    private static class Progress {
+        private final World world;
+        private final int total;
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+
+        private Progress(World world, int total) {
+            this.world = world;
+            this.total = total;
+        }
+
+        private void success() {
+            loaded.incrementAndGet();
+            finish();
+        }
+
+        private void fail(Throwable ex) {
+            failed.incrementAndGet();
+            Bukkit.getLogger().warning("[AxGraves] Failed to load a grave: " + ex.getMessage());
+            finish();
+        }
+
+        private void finish() {
+            if (done.incrementAndGet() != total) return;
+            Bukkit.getLogger().info("[AxGraves] Loaded " + loaded.get() + " grave(s) in " + world.getName() + (failed.get() > 0 ? " (" + failed.get() + " failed)" : ""));
+        }
+    }
+}
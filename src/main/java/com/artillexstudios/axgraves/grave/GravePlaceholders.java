@@ -2,14 +2,13 @@ package com.artillexstudios.axgraves.grave;
 
 import com.artillexstudios.axapi.placeholders.PlaceholderHandler;
 import com.artillexstudios.axapi.utils.StringUtils;
-
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import com.artillexstudios.axgraves.config.Settings;
 
 public class GravePlaceholders {
     private static int time;
 
     public static void reload() {
-        time = CONFIG.getInt("despawn-time-seconds", 180);
+        time = Settings.get().despawnTimeSeconds;
     }
 
     public static void register() {
@@ -37,8 +36,12 @@ public class GravePlaceholders {
         PlaceholderHandler.register("despawn-time", handler -> {
             Grave grave = handler.raw(Grave.class);
             if (grave == null) return empty;
-            long spawned = grave.getSpawned();
-            return StringUtils.formatTime(time != -1 ? (time * 1_000L - (System.currentTimeMillis() - spawned)) : System.currentTimeMillis() - spawned);
+            return formatDespawnTime(grave);
         }, false);
     }
+
+    static String formatDespawnTime(Grave grave) {
+        long spawned = grave.getSpawned();
+        return StringUtils.formatTime(time != -1 ? (time * 1_000L - (System.currentTimeMillis() - spawned)) : System.currentTimeMillis() - spawned);
+    }
 }
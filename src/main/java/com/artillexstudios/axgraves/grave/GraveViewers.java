@@ -0,0 +1,39 @@
+package com.artillexstudios.axgraves.grave;
+
+import org.bukkit.Location;
+import org.bukkit.entity.HumanEntity;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The players that have a grave open, so only they have to be checked when someone moves.
+ */
+public class GraveViewers {
+    private static final double MAX_DISTANCE_SQUARED = 49;
+    private static final ConcurrentHashMap<UUID, Grave> sessions = new ConcurrentHashMap<>();
+
+    public static void open(@NotNull HumanEntity viewer, @NotNull Grave grave) {
+        sessions.put(viewer.getUniqueId(), grave);
+    }
+
+    public static void close(@NotNull HumanEntity viewer) {
+        sessions.remove(viewer.getUniqueId());
+    }
+
+    /**
+     * Closes the grave of the viewer if they are going to be too far away from it.
+     */
+    public static void check(@NotNull HumanEntity viewer, @NotNull Location to) {
+        if (sessions.isEmpty()) return;
+
+        final Grave grave = sessions.get(viewer.getUniqueId());
+        if (grave == null) return;
+
+        final Location location = grave.getLocation();
+        if (Objects.equals(to.getWorld(), location.getWorld()) && to.distanceSquared(location) <= MAX_DISTANCE_SQUARED) return;
+        viewer.closeInventory();
+    }
+}
@@ -0,0 +1,163 @@
+package com.artillexstudios.axgraves.grave;
+
+import com.artillexstudios.axapi.hologram.Hologram;
+import com.artillexstudios.axapi.packetentity.PacketEntity;
+import com.artillexstudios.axgraves.config.Settings;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hides the heads and holograms of graves from players farther away than the render distance, closer than what
+ * the server tracks. Past the hologram distance only the head is shown. Also keeps track of the heads and holograms
+ * someone can see, only those have to be animated or refreshed.
+ */
+public class GraveVisibility {
+    // graves tracked by the server this far beyond the render distance still get hidden
+    private static final int TRACKING_MARGIN = 64;
+    private static final ConcurrentHashMap<UUID, View> views = new ConcurrentHashMap<>();
+    private static volatile Set<Grave> watched = Set.of();
+    private static volatile Set<Grave> read = Set.of();
+
+    public static void tick() {
+        final Settings settings = Settings.get();
+        final boolean unlimited = settings.headRenderDistance == -1 && settings.hologramRenderDistance == -1;
+        if (unlimited && !views.isEmpty()) showAll();
+
+        final Set<Grave> seen = new HashSet<>();
+        final Set<Grave> seenHolograms = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            update(player, settings, unlimited, seen, seenHolograms);
+        }
+        watched = seen;
+        read = seenHolograms;
+    }
+
+    /**
+     * The graves with their head shown to at least one player, as of the last check.
+     */
+    @NotNull
+    public static Set<Grave> getWatched() {
+        return watched;
+    }
+
+    /**
+     * The graves with their hologram shown to at least one player, as of the last check.
+     */
+    @NotNull
+    public static Set<Grave> getRead() {
+        return read;
+    }
+
+    /**
+     * Forgets the grave, its head and hologram are about to be replaced or removed.
+     */
+    public static void forget(@NotNull Grave grave) {
+        for (View view : views.values()) {
+            view.heads.remove(grave);
+            view.holograms.remove(grave);
+        }
+    }
+
+    /**
+     * Forgets only the hologram of the grave, it is being rebuilt while the head stays as it is.
+     */
+    public static void forgetHologram(@NotNull Grave grave) {
+        for (View view : views.values()) {
+            view.holograms.remove(grave);
+        }
+    }
+
+    public static void forget(@NotNull Player player) {
+        views.remove(player.getUniqueId());
+    }
+
+    private static void update(Player player, Settings settings, boolean unlimited, Set<Grave> seen, Set<Grave> seenHolograms) {
+        final Location at = player.getLocation();
+        final World world = at.getWorld();
+        final double head = squared(settings.headRenderDistance);
+        final double hologram = squared(settings.hologramRenderDistance);
+        final int radius = ((Math.max(0, Math.max(settings.headRenderDistance, settings.hologramRenderDistance)) + TRACKING_MARGIN) >> 4) + 1;
+        final int cx = at.getBlockX() >> 4;
+        final int cz = at.getBlockZ() >> 4;
+
+        View view = views.get(player.getUniqueId());
+        for (int x = cx - radius; x <= cx + radius; x++) {
+            for (int z = cz - radius; z <= cz + radius; z++) {
+                for (Grave grave : SpawnedGraves.getGravesIn(world, x, z)) {
+                    if (grave.isDormant()) continue;
+
+                    final double distance = grave.getLocation().distanceSquared(at);
+                    final boolean showHead = head == -1 || distance <= head;
+                    // a hologram without its head would look odd
+                    final boolean showHologram = showHead && (hologram == -1 || distance <= hologram);
+                    final boolean tracked = !unlimited || distance <= TRACKING_MARGIN * TRACKING_MARGIN;
+                    if (showHead && tracked) seen.add(grave);
+                    if (showHologram && tracked) seenHolograms.add(grave);
+                    if (unlimited) continue;
+
+                    if (view == null) {
+                        if (showHead && showHologram) continue;
+                        view = views.computeIfAbsent(player.getUniqueId(), k -> new View());
+                    }
+
+                    setHead(player, grave, view, showHead);
+                    setHologram(player, grave, view, showHologram);
+                }
+            }
+        }
+    }
+
+    private static void setHead(Player player, Grave grave, View view, boolean show) {
+        final PacketEntity entity = grave.getEntity();
+        if (entity == null) return;
+
+        if (show) {
+            if (view.heads.remove(grave)) entity.show(player);
+        } else if (view.heads.add(grave)) {
+            entity.hide(player);
+        }
+    }
+
+    private static void setHologram(Player player, Grave grave, View view, boolean show) {
+        final Hologram hologram = grave.getHologram();
+        if (hologram == null) return;
+
+        if (show) {
+            if (view.holograms.remove(grave)) hologram.show(player);
+        } else if (view.holograms.add(grave)) {
+            hologram.hide(player);
+        }
+    }
+
+    private static void showAll() {
+        for (UUID id : views.keySet()) {
+            final View view = views.remove(id);
+            final Player player = Bukkit.getPlayer(id);
+            if (view == null || player == null) continue;
+
+            for (Grave grave : view.heads) {
+                if (grave.getEntity() != null) grave.getEntity().show(player);
+            }
+            for (Grave grave : view.holograms) {
+                if (grave.getHologram() != null) grave.getHologram().show(player);
+            }
+        }
+    }
+
+    private static double squared(int distance) {
+        return distance == -1 ? -1 : (double) distance * distance;
+    }
+
+    private static class View {
+        private final Set<Grave> heads = ConcurrentHashMap.newKeySet();
+        private final Set<Grave> holograms = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -1,126 +1,394 @@
 package com.artillexstudios.axgraves.grave;
 
+import com.artillexstudios.axapi.scheduler.Scheduler;
 import com.artillexstudios.axapi.serializers.Serializers;
 import com.artillexstudios.axgraves.AxGraves;
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.storage.GraveStorage;
 import com.artillexstudios.axgraves.utils.LimitUtils;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import static com.artillexstudios.axgraves.AxGraves.EXECUTOR;
 
 public class SpawnedGraves {
     private static final ConcurrentLinkedQueue<Grave> graves = new ConcurrentLinkedQueue<>();
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // world -> packed block position -> graves in that block, so a click is a single lookup
+    private static final ConcurrentHashMap<UUID, ConcurrentHashMap<Long, List<Grave>>> blocks = new ConcurrentHashMap<>();
+    // world -> chunk key -> graves in that chunk, for putting graves to sleep and waking them up
+    private static final ConcurrentHashMap<UUID, ConcurrentHashMap<Long, List<Grave>>> chunks = new ConcurrentHashMap<>();
+    // owner -> their graves, oldest first
+    private static final ConcurrentHashMap<UUID, NavigableSet<Grave>> owners = new ConcurrentHashMap<>();
+    private static final Comparator<Grave> OLDEST_FIRST = Comparator.comparingLong(Grave::getSpawned).thenComparing(Grave::getId);
+    private static final Set<UUID> loadedWorlds = ConcurrentHashMap.newKeySet();
+    private static final Gson gson = new Gson();
 
     public static void addGrave(Grave grave) {
         Player player = grave.getPlayer().getPlayer();
-        int graveLimit = player == null ? CONFIG.getInt("grave-limit", -1) : LimitUtils.getGraveLimit(player);
+        int graveLimit = player == null ? Settings.get().graveLimit : LimitUtils.getGraveLimit(player);
 
         if (graveLimit != -1) {
-            int num = 0;
+            final NavigableSet<Grave> owned = getGraves(grave.getPlayer().getUniqueId());
             Grave oldest = grave;
 
-            for (Grave grave2 : graves) {
-                if (!grave2.getPlayer().equals(grave.getPlayer())) continue;
-                if (oldest.getSpawned() > grave2.getSpawned()) oldest = grave2;
-                num++;
-            }
+            // on a tie the grave already there goes, not the one that was just made
+            if (!owned.isEmpty() && oldest.getSpawned() >= owned.first().getSpawned()) oldest = owned.first();
 
-            if (num >= graveLimit) oldest.remove();
+            if (owned.size() >= graveLimit) oldest.remove();
+            // it dropped its items already, it must not be saved
+            if (grave.isRemoved()) return;
         }
 
         graves.add(grave);
+        index(grave);
+        grave.scheduleExpiry();
+        grave.update();
+        GraveStorage.markCreated(grave);
+    }
+
+    /**
+     * Adds a grave restored from storage, it is already saved.
+     */
+    static void restoreGrave(Grave grave) {
+        graves.add(grave);
+        index(grave);
+        grave.scheduleExpiry();
+
+        // restored graves start asleep, graves in unloaded chunks wait for their chunk
+        final Location l = grave.getLocation();
+        if (l.getWorld().isChunkLoaded(l.getBlockX() >> 4, l.getBlockZ() >> 4)) grave.wake();
     }
 
     public static void removeGrave(Grave grave) {
-        graves.remove(grave);
+        if (!graves.remove(grave)) return;
+        unindex(grave);
+        GraveStorage.markRemoved(grave);
+    }
+
+    @Nullable
+    public static Grave getGraveAt(@NotNull Block block) {
+        final ConcurrentHashMap<Long, List<Grave>> world = blocks.get(block.getWorld().getUID());
+        if (world == null) return null;
+
+        final List<Grave> found = world.get(pack(block.getX(), block.getY(), block.getZ()));
+        if (found == null || found.isEmpty()) return null;
+        return found.get(0);
+    }
+
+    /**
+     * The graves in a chunk, empty if there are none.
+     */
+    @NotNull
+    public static List<Grave> getGravesIn(@NotNull Chunk chunk) {
+        return getGravesIn(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @NotNull
+    public static List<Grave> getGravesIn(@NotNull World world, int chunkX, int chunkZ) {
+        final ConcurrentHashMap<Long, List<Grave>> found = chunks.get(world.getUID());
+        if (found == null) return List.of();
+
+        final List<Grave> graves = found.get(chunkKey(chunkX, chunkZ));
+        return graves == null ? List.of() : graves;
+    }
+
+    private static void index(Grave grave) {
+        final Location l = grave.getLocation();
+        add(blocks, l.getWorld().getUID(), pack(l.getBlockX(), l.getBlockY(), l.getBlockZ()), grave);
+        add(chunks, l.getWorld().getUID(), chunkKey(l.getBlockX() >> 4, l.getBlockZ() >> 4), grave);
+
+        owners.compute(grave.getPlayer().getUniqueId(), (k, owned) -> {
+            if (owned == null) owned = new ConcurrentSkipListSet<>(OLDEST_FIRST);
+            owned.add(grave);
+            return owned;
+        });
+    }
+
+    private static void unindex(Grave grave) {
+        final Location l = grave.getLocation();
+        remove(blocks, l.getWorld().getUID(), pack(l.getBlockX(), l.getBlockY(), l.getBlockZ()), grave);
+        remove(chunks, l.getWorld().getUID(), chunkKey(l.getBlockX() >> 4, l.getBlockZ() >> 4), grave);
+
+        owners.computeIfPresent(grave.getPlayer().getUniqueId(), (k, owned) -> {
+            owned.remove(grave);
+            return owned.isEmpty() ? null : owned;
+        });
+    }
+
+    private static void add(ConcurrentHashMap<UUID, ConcurrentHashMap<Long, List<Grave>>> index, UUID world, long key, Grave grave) {
+        index.computeIfAbsent(world, k -> new ConcurrentHashMap<>()).compute(key, (k, list) -> {
+            if (list == null) list = new CopyOnWriteArrayList<>();
+            list.add(grave);
+            return list;
+        });
+    }
+
+    private static void remove(ConcurrentHashMap<UUID, ConcurrentHashMap<Long, List<Grave>>> index, UUID world, long key, Grave grave) {
+        final ConcurrentHashMap<Long, List<Grave>> keyed = index.get(world);
+        if (keyed == null) return;
+
+        keyed.computeIfPresent(key, (k, list) -> {
+            list.remove(grave);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static long chunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
     }
 
     public static ConcurrentLinkedQueue<Grave> getGraves() {
         return graves;
     }
 
+    /**
+     * The graves of a single player, oldest first.
+     */
+    @NotNull
+    public static NavigableSet<Grave> getGraves(@NotNull UUID owner) {
+        final NavigableSet<Grave> owned = owners.get(owner);
+        if (owned == null) return Collections.emptyNavigableSet();
+        return Collections.unmodifiableNavigableSet(owned);
+    }
+
     public static void saveToFile() {
-        final JsonArray array = new JsonArray(graves.size());
+        GraveStorage.save();
+    }
 
+    public static void loadFromFile() {
+        for (World world : Bukkit.getWorlds()) {
+            loadWorld(world);
+            migrateLegacyWorld(world);
+        }
+
+        migrateLegacyFile();
+    }
+
+    public static void loadWorld(World world) {
+        if (!loadedWorlds.add(world.getUID())) return;
+        GraveLoader.load(world);
+    }
+
+    static boolean isLoaded(World world) {
+        return loadedWorlds.contains(world.getUID()) && Bukkit.getWorld(world.getUID()) == world;
+    }
+
+    public static void unloadWorld(World world) {
+        if (!loadedWorlds.remove(world.getUID())) return;
+
+        final List<Grave> unloaded = new ArrayList<>();
         for (Grave grave : graves) {
-            final JsonObject obj = new JsonObject();
-            obj.addProperty("location", Serializers.LOCATION.serialize(grave.getLocation()));
-            obj.addProperty("owner", grave.getPlayer().getUniqueId().toString());
-            obj.addProperty("items", Base64.getEncoder().encodeToString(Serializers.ITEM_ARRAY.serialize(grave.getGui().getContents())));
-            obj.addProperty("xp", grave.getStoredXP());
-            obj.addProperty("date", grave.getSpawned());
-
-            array.add(obj);
+            if (!world.equals(grave.getLocation().getWorld())) continue;
+            unloaded.add(grave);
         }
 
-        File file = new File(AxGraves.getInstance().getDataFolder(), "data.json");
-        try (FileWriter fw = new FileWriter(file)) {
-            gson.toJson(array, fw);
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        GraveStorage.unload(world.getUID(), unloaded);
+        for (Grave grave : unloaded) {
+            graves.remove(grave);
+            unindex(grave);
+            grave.despawn();
         }
     }
 
-    public static void loadFromFile() {
-        JsonArray array;
+    /**
+     * Older versions kept every grave in data.json. The graves of loaded worlds are moved into the storage right
+     * away, the rest is split into one file per world and picked up once that world loads. Graves of worlds that
+     * no longer exist are set aside in data.json.orphaned, so nothing reads them again.
+     */
+    public static void migrateLegacyFile() {
         File file = new File(AxGraves.getInstance().getDataFolder(), "data.json");
-        try (FileReader fw = new FileReader(file)) {
-            array = gson.fromJson(fw, JsonArray.class);
-        } catch (FileNotFoundException ex) {
-            Bukkit.getLogger().info("[AxGraves] No saved graves to load (this is normal on first run)");
-            return;
+        if (!file.exists()) return;
+
+        int loaded = 0;
+        int failed = 0;
+        boolean broken = false;
+        final Map<String, JsonArray> remaining = new HashMap<>();
+
+        // read one grave at a time, the file can be far too large to parse as a whole
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                JsonObject obj = gson.fromJson(reader, JsonObject.class);
+                try {
+                    final String serialized = obj.get("location").getAsString();
+                    Location location = Serializers.LOCATION.deserialize(serialized);
+                    if (location == null || location.getWorld() == null) {
+                        remaining.computeIfAbsent(getWorldName(serialized), k -> new JsonArray()).add(obj);
+                        continue;
+                    }
+                    addGrave(toLegacyGrave(location, obj));
+                    loaded++;
+                } catch (Exception ex) {
+                    failed++;
+                    Bukkit.getLogger().warning("[AxGraves] Failed to load a grave: " + ex.getMessage());
+                }
+            }
         } catch (Exception ex) {
+            broken = true;
             Bukkit.getLogger().severe("[AxGraves] Error reading graves data file: " + ex.getMessage());
             ex.printStackTrace();
-            return;
         }
-        file.delete();
-        if (array == null) return;
 
-        int loaded = 0;
-        int failed = 0;
+        if (loaded == 0 && failed == 0 && remaining.isEmpty()) return;
+
+        // only drop the old file once its graves are safely in the journal
+        if (loaded > 0) GraveStorage.saveNow();
 
-        for (JsonElement el : array) {
+        int waiting = 0;
+        int orphaned = 0;
+        final JsonArray unsplit = new JsonArray();
+        for (Map.Entry<String, JsonArray> entry : remaining.entrySet()) {
+            final boolean exists = new File(Bukkit.getWorldContainer(), entry.getKey()).isDirectory();
+            final File target = exists ? getLegacyFile(entry.getKey()) : new File(file.getParentFile(), "data.json.orphaned");
             try {
-                JsonObject obj = el.getAsJsonObject();
-                Location location = Serializers.LOCATION.deserialize(obj.get("location").getAsString());
-                if (location == null || location.getWorld() == null) {
-                    failed++;
-                    Bukkit.getLogger().warning("[AxGraves] Skipped grave with invalid location or world not loaded");
+                appendLegacy(target, entry.getValue());
+                if (exists) waiting += entry.getValue().size();
+                else orphaned += entry.getValue().size();
+            } catch (Exception ex) {
+                unsplit.addAll(entry.getValue());
+                Bukkit.getLogger().severe("[AxGraves] Failed to set aside the graves of world " + entry.getKey() + ": " + ex.getMessage());
+            }
+        }
+
+        if (broken) {
+            // the unreadable rest stays in a copy, the graves already moved must not be loaded twice
+            file.renameTo(new File(file.getParentFile(), "data.json.broken"));
+        }
+        if (unsplit.isEmpty()) {
+            file.delete();
+        } else {
+            try (FileWriter fw = new FileWriter(file)) {
+                gson.toJson(unsplit, fw);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        Bukkit.getLogger().info("[AxGraves] Migrated " + loaded + " grave(s) from data.json" + (failed > 0 ? " (" + failed + " failed)" : "") + (waiting > 0 ? " (" + waiting + " waiting for their world to load)" : "") + (orphaned > 0 ? " (" + orphaned + " of deleted worlds moved to data.json.orphaned)" : ""));
+    }
+
+    /**
+     * Moves the graves data.json held back for a world into the storage. The file is read off the main thread,
+     * every grave is created on the thread owning it and the file is only deleted once they were written.
+     */
+    public static void migrateLegacyWorld(@NotNull World world) {
+        final File file = getLegacyFile(world.getName());
+        if (!file.exists()) return;
+
+        CompletableFuture.supplyAsync(() -> {
+            try (FileReader reader = new FileReader(file)) {
+                return gson.fromJson(reader, JsonArray.class);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR).thenCompose(entries -> {
+            final List<CompletableFuture<Void>> spawned = new ArrayList<>(entries.size());
+            for (JsonElement element : entries) {
+                final JsonObject obj = element.getAsJsonObject();
+                final Location location = Serializers.LOCATION.deserialize(obj.get("location").getAsString());
+                if (location == null || !world.equals(location.getWorld())) {
+                    Bukkit.getLogger().warning("[AxGraves] Skipped a grave of data.json with an invalid location in world " + world.getName());
                     continue;
                 }
-                OfflinePlayer owner = Bukkit.getOfflinePlayer(UUID.fromString(obj.get("owner").getAsString()));
-                String itStr = obj.get("items").getAsString();
-                ItemStack[] items = Serializers.ITEM_ARRAY.deserialize(Base64.getDecoder().decode(itStr));
-                int xp = obj.get("xp").getAsInt();
-                long date = obj.get("date").getAsLong();
-                addGrave(new Grave(location, owner, Arrays.asList(items), xp, date));
-                loaded++;
-            } catch (Exception ex) {
-                failed++;
-                Bukkit.getLogger().warning("[AxGraves] Failed to load a grave: " + ex.getMessage());
-                // Continue loading other graves even if one fails
+
+                final CompletableFuture<Void> future = new CompletableFuture<>();
+                Scheduler.get().runAt(location, () -> {
+                    try {
+                        addGrave(toLegacyGrave(location, obj));
+                    } catch (Exception ex) {
+                        Bukkit.getLogger().warning("[AxGraves] Failed to load a grave: " + ex.getMessage());
+                    } finally {
+                        future.complete(null);
+                    }
+                });
+                spawned.add(future);
+            }
+
+            return CompletableFuture.allOf(spawned.toArray(CompletableFuture[]::new))
+                    .thenCompose(v -> GraveStorage.flush())
+                    .thenRun(() -> {
+                        file.delete();
+                        Bukkit.getLogger().info("[AxGraves] Migrated " + spawned.size() + " grave(s) of world " + world.getName() + " from data.json");
+                    });
+        }).exceptionally(ex -> {
+            Bukkit.getLogger().severe("[AxGraves] Failed to migrate the data.json graves of world " + world.getName() + ": " + ex.getMessage());
+            ex.printStackTrace();
+            return null;
+        });
+    }
+
+    private static Grave toLegacyGrave(Location location, JsonObject obj) {
+        OfflinePlayer owner = Bukkit.getOfflinePlayer(UUID.fromString(obj.get("owner").getAsString()));
+        String itStr = obj.get("items").getAsString();
+        ItemStack[] items = Serializers.ITEM_ARRAY.deserialize(Base64.getDecoder().decode(itStr));
+        int xp = obj.get("xp").getAsInt();
+        long date = obj.get("date").getAsLong();
+        return new Grave(location, owner, Arrays.asList(items), xp, date);
+    }
+
+    // a serialized location starts with the name of its world
+    private static String getWorldName(String location) {
+        final int end = location.indexOf(';');
+        return end == -1 ? location : location.substring(0, end);
+    }
+
+    private static File getLegacyFile(String world) {
+        return new File(new File(AxGraves.getInstance().getDataFolder(), "legacy"), world + ".json");
+    }
+
+    // adds to what an earlier migration already set aside in the file
+    private static void appendLegacy(File file, JsonArray graves) throws IOException {
+        final JsonArray merged = new JsonArray();
+        if (file.exists()) {
+            try (FileReader reader = new FileReader(file)) {
+                merged.addAll(gson.fromJson(reader, JsonArray.class));
             }
         }
+        merged.addAll(graves);
 
-        Bukkit.getLogger().info("[AxGraves] Loaded " + loaded + " grave(s)" + (failed > 0 ? " (" + failed + " failed)" : ""));
+        file.getParentFile().mkdirs();
+        try (FileWriter fw = new FileWriter(file)) {
+            gson.toJson(merged, fw);
+        }
     }
 }
@@ -1,9 +1,8 @@
 package com.artillexstudios.axgraves.listeners;
 
 import com.artillexstudios.axgraves.api.events.GravePreSpawnEvent;
-import com.artillexstudios.axgraves.api.events.GraveSpawnEvent;
-import com.artillexstudios.axgraves.grave.Grave;
-import com.artillexstudios.axgraves.grave.SpawnedGraves;
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.grave.GraveCreator;
 import com.artillexstudios.axgraves.utils.ExperienceUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -18,26 +17,25 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Arrays;
 import java.util.List;
 
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
-
 public class DeathListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onDeath(@NotNull PlayerDeathEvent event) {
         try {
-            if (CONFIG.getStringList("disabled-worlds") != null && CONFIG.getStringList("disabled-worlds").contains(event.getEntity().getWorld().getName())) return;
-            if (!CONFIG.getBoolean("override-keep-inventory", true) && event.getKeepInventory()) return;
+            final Settings settings = Settings.get();
+            if (settings.disabledWorlds.contains(event.getEntity().getWorld().getName())) return;
+            if (!settings.overrideKeepInventory && event.getKeepInventory()) return;
 
             Player player = event.getEntity();
             if (!player.hasPermission("axgraves.allowgraves")) return;
 
-            if (player.getLastDamageCause() != null && CONFIG.getStringList("blacklisted-death-causes").contains(player.getLastDamageCause().getCause().name())) return;
+            if (player.getLastDamageCause() != null && settings.blacklistedDeathCauses.contains(player.getLastDamageCause().getCause().name())) return;
             if (player.getInventory().isEmpty() && player.getTotalExperience() == 0) return;
 
             int xp = 0;
-            boolean storeXp = CONFIG.getBoolean("store-xp", true);
+            boolean storeXp = settings.storeXp;
             if (storeXp) {
-                xp = Math.round(ExperienceUtils.getExp(player) * CONFIG.getFloat("xp-keep-percentage", 1f));
+                xp = Math.round(ExperienceUtils.getExp(player) * settings.xpKeepPercentage);
             }
 
             Location location = player.getLocation();
@@ -50,7 +48,7 @@ public class DeathListener implements Listener {
             List<ItemStack> drops = null;
             if (!event.getKeepInventory()) {
                 drops = event.getDrops();
-            } else if (CONFIG.getBoolean("override-keep-inventory", true)) {
+            } else if (settings.overrideKeepInventory) {
                 drops = Arrays.asList(player.getInventory().getContents());
                 if (storeXp) {
                     player.setLevel(0);
@@ -60,15 +58,10 @@ public class DeathListener implements Listener {
             }
 
             if (drops == null) return;
-            Grave grave = new Grave(location, player, drops, xp, System.currentTimeMillis());
+            GraveCreator.create(player, location, drops, xp);
 
             if (storeXp) event.setDroppedExp(0);
             event.getDrops().clear();
-
-            SpawnedGraves.addGrave(grave);
-
-            final GraveSpawnEvent graveSpawnEvent = new GraveSpawnEvent(player, grave);
-            Bukkit.getPluginManager().callEvent(graveSpawnEvent);
         } catch (Exception e) {
             Bukkit.getLogger().severe("[AxGraves] Critical error creating grave for player " + event.getEntity().getName());
             Bukkit.getLogger().severe("[AxGraves] Error: " + e.getMessage());
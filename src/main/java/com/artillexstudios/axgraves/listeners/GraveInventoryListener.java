@@ -0,0 +1,34 @@
+package com.artillexstudios.axgraves.listeners;
+
+import com.artillexstudios.axgraves.grave.Grave;
+import com.artillexstudios.axgraves.storage.GraveStorage;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class GraveInventoryListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClick(@NotNull InventoryClickEvent event) {
+        if (!(event.getView().getTopInventory().getHolder() instanceof Grave grave)) return;
+        GraveStorage.markItems(grave);
+        grave.queueRecount();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrag(@NotNull InventoryDragEvent event) {
+        if (!(event.getView().getTopInventory().getHolder() instanceof Grave grave)) return;
+        GraveStorage.markItems(grave);
+        grave.queueRecount();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClose(@NotNull InventoryCloseEvent event) {
+        if (!(event.getInventory().getHolder() instanceof Grave grave)) return;
+        GraveStorage.markItems(grave);
+    }
+}
@@ -0,0 +1,53 @@
+package com.artillexstudios.axgraves.listeners;
+
+import com.artillexstudios.axgraves.grave.Grave;
+import com.artillexstudios.axgraves.grave.GraveViewers;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class GraveViewerListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onOpen(@NotNull InventoryOpenEvent event) {
+        if (!(event.getInventory().getHolder() instanceof Grave grave)) return;
+        GraveViewers.open(event.getPlayer(), grave);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClose(@NotNull InventoryCloseEvent event) {
+        if (!(event.getInventory().getHolder() instanceof Grave)) return;
+        GraveViewers.close(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        GraveViewers.close(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(@NotNull PlayerMoveEvent event) {
+        final Location from = event.getFrom();
+        final Location to = event.getTo();
+        if (to == null) return;
+        // looking around doesn't change the distance
+        if (from.getWorld() == to.getWorld() && from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) return;
+
+        GraveViewers.check(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(@NotNull PlayerTeleportEvent event) {
+        final Location to = event.getTo();
+        if (to == null) return;
+
+        GraveViewers.check(event.getPlayer(), to);
+    }
+}
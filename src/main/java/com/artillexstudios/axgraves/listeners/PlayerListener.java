@@ -0,0 +1,34 @@
+package com.artillexstudios.axgraves.listeners;
+
+import com.artillexstudios.axgraves.grave.GraveVisibility;
+import com.artillexstudios.axgraves.utils.LimitUtils;
+import com.artillexstudios.axgraves.utils.Utils;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class PlayerListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        LimitUtils.invalidate(event.getPlayer().getUniqueId());
+        // their skin may have changed since the head was cached
+        Utils.forgetHead(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        LimitUtils.invalidate(event.getPlayer().getUniqueId());
+        GraveVisibility.forget(event.getPlayer());
+    }
+
+    // permission plugins can give different permissions per world
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(@NotNull PlayerChangedWorldEvent event) {
+        LimitUtils.invalidate(event.getPlayer().getUniqueId());
+    }
+}
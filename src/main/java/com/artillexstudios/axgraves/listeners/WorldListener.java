@@ -0,0 +1,51 @@
+package com.artillexstudios.axgraves.listeners;
+
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.grave.Grave;
+import com.artillexstudios.axgraves.grave.SpawnedGraves;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class WorldListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(@NotNull ChunkLoadEvent event) {
+        for (Grave grave : SpawnedGraves.getGravesIn(event.getChunk())) {
+            grave.wake();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(@NotNull ChunkUnloadEvent event) {
+        for (Grave grave : SpawnedGraves.getGravesIn(event.getChunk())) {
+            grave.sleep();
+        }
+    }
+
+    @EventHandler
+    public void onLoad(@NotNull WorldLoadEvent event) {
+        if (!Settings.get().saveGraves) return;
+        SpawnedGraves.loadWorld(event.getWorld());
+        SpawnedGraves.migrateLegacyWorld(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onUnload(@NotNull WorldUnloadEvent event) {
+        if (Settings.get().saveGraves) {
+            SpawnedGraves.unloadWorld(event.getWorld());
+            return;
+        }
+
+        // nothing would keep these graves, so empty them before the world goes away
+        for (Grave grave : SpawnedGraves.getGraves()) {
+            if (!event.getWorld().equals(grave.getLocation().getWorld())) continue;
+            grave.remove();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.artillexstudios.axgraves.schedulers;
 
 import com.artillexstudios.axgraves.grave.SpawnedGraves;
+import com.artillexstudios.axgraves.storage.GraveStorage;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -20,7 +21,9 @@ public class SaveGraves {
 
         future = EXECUTOR.scheduleAtFixedRate(() -> {
             try {
-                SpawnedGraves.saveToFile();
+                // changes are logged as they happen, this only catches up if flushing is turned off
+                if (GraveStorage.isDirty()) SpawnedGraves.saveToFile();
+                GraveStorage.checkpoint();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
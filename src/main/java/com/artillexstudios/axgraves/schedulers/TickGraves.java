@@ -1,49 +1,54 @@
 package com.artillexstudios.axgraves.schedulers;
 
 import com.artillexstudios.axapi.scheduler.Scheduler;
+import com.artillexstudios.axgraves.config.Settings;
 import com.artillexstudios.axgraves.grave.Grave;
-import com.artillexstudios.axgraves.grave.SpawnedGraves;
-import org.bukkit.entity.HumanEntity;
-
-import java.util.ArrayList;
-import java.util.Objects;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
-import static com.artillexstudios.axgraves.AxGraves.EXECUTOR;
+import com.artillexstudios.axgraves.grave.GraveHologram;
+import com.artillexstudios.axgraves.grave.GraveVisibility;
 
 public class TickGraves {
-    private static ScheduledFuture<?> future = null;
+    private static volatile boolean running = false;
+    private static boolean started = false;
+    private static int ticks = 0;
 
     public static void start() {
-        if (future != null) future.cancel(true);
-
-        future = EXECUTOR.scheduleAtFixedRate(() -> {
-            try {
-                for (Grave grave : SpawnedGraves.getGraves()) {
-                    grave.update();
-                }
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }, 100, 100, TimeUnit.MILLISECONDS);
+        running = true;
+        if (started) return;
+        started = true;
 
+        // expiry is scheduled per grave, these only take care of what players can see
+        Scheduler.get().runTimer(() -> {
+            if (running) GraveVisibility.tick();
+        }, 10, 10);
         Scheduler.get().runTimer(() -> {
-            for (Grave grave : SpawnedGraves.getGraves()) {
-                for (HumanEntity viewer : new ArrayList<>(grave.getGui().getViewers())) {
-                    if (!Objects.equals(viewer.getWorld(), grave.getLocation().getWorld())) {
-                        viewer.closeInventory();
-                        continue;
-                    }
-                    if (viewer.getLocation().distanceSquared(grave.getLocation()) <= 49) continue;
-                    viewer.closeInventory();
-                }
-            }
-        }, 20, 20);
+            if (running) refreshHolograms();
+        }, 1, 1);
+        Scheduler.get().runTimer(() -> {
+            if (running) rotate();
+        }, 2, 2);
+    }
+
+    // only the despawn time changes by itself, everything else refreshes the hologram when it changes
+    private static void refreshHolograms() {
+        if (++ticks < Settings.get().hologramUpdateTicks) return;
+        ticks = 0;
+        if (!GraveHologram.get().isTimed()) return;
+
+        for (Grave grave : GraveVisibility.getRead()) {
+            grave.refreshHologram();
+        }
+    }
+
+    // heads nobody is close enough to see don't have to turn
+    private static void rotate() {
+        if (!Settings.get().autoRotationEnabled) return;
+
+        for (Grave grave : GraveVisibility.getWatched()) {
+            grave.rotate();
+        }
     }
 
     public static void stop() {
-        if (future == null) return;
-        future.cancel(true);
+        running = false;
     }
 }
@@ -0,0 +1,144 @@
+package com.artillexstudios.axgraves.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default storage, keeps every world in its own journal and snapshot file pair.
+ * Queries have to read the files, so they are only meant for occasional admin use.
+ */
+public class FileGraveRepository implements GraveRepository {
+    private final File folder;
+    private final ConcurrentHashMap<UUID, GraveShard> shards = new ConcurrentHashMap<>();
+
+    public FileGraveRepository(@NotNull File folder) {
+        this.folder = folder;
+    }
+
+    @NotNull
+    @Override
+    public Collection<GraveData> load(@NotNull UUID world) throws IOException {
+        return getShard(world).load();
+    }
+
+    @Override
+    public void write(@NotNull Collection<GraveChange> changes) throws IOException {
+        final Map<UUID, List<GraveChange>> worlds = new HashMap<>();
+        for (GraveChange change : changes) {
+            worlds.computeIfAbsent(change.getWorld(), k -> new ArrayList<>()).add(change);
+        }
+
+        IOException failure = null;
+        for (Map.Entry<UUID, List<GraveChange>> entry : worlds.entrySet()) {
+            try {
+                getShard(entry.getKey()).write(entry.getValue());
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public void insert(@NotNull Collection<GraveData> graves) throws IOException {
+        final Map<UUID, List<GraveData>> worlds = new HashMap<>();
+        for (GraveData data : graves) {
+            worlds.computeIfAbsent(data.getWorld(), k -> new ArrayList<>()).add(data);
+        }
+
+        for (Map.Entry<UUID, List<GraveData>> entry : worlds.entrySet()) {
+            getShard(entry.getKey()).append(entry.getValue());
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<GraveSummary> findByOwner(@NotNull UUID owner) throws IOException {
+        final List<GraveSummary> found = new ArrayList<>();
+        for (UUID world : getStoredWorlds()) {
+            for (GraveData data : getShard(world).scan()) {
+                if (!data.getOwner().equals(owner)) continue;
+                found.add(GraveSummary.of(data));
+            }
+        }
+        return found;
+    }
+
+    @NotNull
+    @Override
+    public List<GraveSummary> findInArea(@NotNull UUID world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException {
+        final List<GraveSummary> found = new ArrayList<>();
+        if (!getShard(world).exists()) return found;
+
+        for (GraveData data : getShard(world).scan()) {
+            final int chunkX = (int) Math.floor(data.getX()) >> 4;
+            final int chunkZ = (int) Math.floor(data.getZ()) >> 4;
+            if (chunkX < minChunkX || chunkX > maxChunkX || chunkZ < minChunkZ || chunkZ > maxChunkZ) continue;
+            found.add(GraveSummary.of(data));
+        }
+        return found;
+    }
+
+    @Override
+    public void checkpoint() {
+        for (GraveShard shard : shards.values()) {
+            shard.checkpoint();
+        }
+    }
+
+    @Override
+    public void unload(@NotNull UUID world) {
+        final GraveShard shard = shards.remove(world);
+        if (shard != null) shard.close();
+    }
+
+    @Override
+    public void close() {
+        for (GraveShard shard : shards.values()) {
+            shard.close();
+        }
+        shards.clear();
+    }
+
+    public boolean exists(@NotNull UUID world) {
+        return getShard(world).exists();
+    }
+
+    public void delete(@NotNull UUID world) {
+        getShard(world).delete();
+        shards.remove(world);
+    }
+
+    private Set<UUID> getStoredWorlds() {
+        final Set<UUID> worlds = new HashSet<>(shards.keySet());
+        final File[] files = folder.listFiles();
+        if (files == null) return worlds;
+
+        for (File file : files) {
+            final String name = file.getName();
+            final int dot = name.indexOf('.');
+            if (dot == -1) continue;
+            try {
+                worlds.add(UUID.fromString(name.substring(0, dot)));
+            } catch (IllegalArgumentException ignored) {
+                // not a shard
+            }
+        }
+        return worlds;
+    }
+
+    private GraveShard getShard(UUID world) {
+        return shards.computeIfAbsent(world, uuid -> new GraveShard(folder, uuid.toString()));
+    }
+}
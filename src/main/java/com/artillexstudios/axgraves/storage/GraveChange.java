@@ -0,0 +1,141 @@
+package com.artillexstudios.axgraves.storage;
+
+import com.artillexstudios.axgraves.grave.Grave;
+import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of a dirty grave, taken on the thread that owns the grave.
+ * Holds cloned items only, encoding happens later on the save thread.
+ */
+public class GraveChange {
+    private final Grave grave;
+    private final int flags;
+    private final UUID id;
+    private final UUID owner;
+    private final UUID world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final long spawned;
+    private final int xp;
+    private final int itemCount;
+    private final ItemStack[] items;
+    private final byte[] serializedItems;
+
+    private GraveChange(Grave grave, int flags, UUID id, UUID owner, UUID world, double x, double y, double z, float yaw, long spawned, int xp, int itemCount, ItemStack[] items, byte[] serializedItems) {
+        this.grave = grave;
+        this.flags = flags;
+        this.id = id;
+        this.owner = owner;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.spawned = spawned;
+        this.xp = xp;
+        this.itemCount = itemCount;
+        this.items = items;
+        this.serializedItems = serializedItems;
+    }
+
+    @NotNull
+    static GraveChange capture(@NotNull Grave grave, int flags) {
+        final Location l = grave.getLocation();
+        if ((flags & GraveStorage.DIRTY_REMOVED) != 0) {
+            return new GraveChange(grave, flags, grave.getId(), null, l.getWorld().getUID(), 0, 0, 0, 0, 0, 0, 0, null, null);
+        }
+
+        ItemStack[] items = null;
+        // restored graves that were never opened still hold their saved bytes, no need to decode them
+        final byte[] serializedItems = grave.getSerializedItems();
+        if (serializedItems == null && (flags & (GraveStorage.DIRTY_CREATED | GraveStorage.DIRTY_ITEMS)) != 0) {
+            items = grave.getGui().getContents();
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] != null) items[i] = items[i].clone();
+            }
+        }
+
+        return new GraveChange(
+                grave,
+                flags,
+                grave.getId(),
+                grave.getPlayer().getUniqueId(),
+                l.getWorld().getUID(),
+                l.getX(), l.getY(), l.getZ(), l.getYaw(),
+                grave.getSpawned(),
+                grave.getStoredXP(),
+                grave.countItems(),
+                items,
+                serializedItems
+        );
+    }
+
+    Grave getGrave() {
+        return grave;
+    }
+
+    int getFlags() {
+        return flags;
+    }
+
+    /**
+     * The grave is gone and should be deleted.
+     */
+    public boolean isRemoved() {
+        return (flags & GraveStorage.DIRTY_REMOVED) != 0;
+    }
+
+    /**
+     * The grave is new (or its state is unknown to the repository), {@link #toData()} holds everything.
+     */
+    public boolean isCreated() {
+        return (flags & GraveStorage.DIRTY_CREATED) != 0;
+    }
+
+    public boolean hasItems() {
+        return (flags & GraveStorage.DIRTY_ITEMS) != 0;
+    }
+
+    public boolean hasXp() {
+        return (flags & GraveStorage.DIRTY_XP) != 0;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public int getXp() {
+        return xp;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public byte[] encodeItems() {
+        if (serializedItems != null) return serializedItems;
+        return ItemPayload.encode(items);
+    }
+
+    public GraveData toData() {
+        return new GraveData(id, owner, world, x, y, z, yaw, spawned, xp, itemCount, encodeItems());
+    }
+}
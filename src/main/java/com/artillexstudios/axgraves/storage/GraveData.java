@@ -0,0 +1,140 @@
+package com.artillexstudios.axgraves.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+public class GraveData {
+    private final UUID id;
+    private final UUID owner;
+    private final UUID world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final long spawned;
+    private int xp;
+    private int itemCount;
+    private byte[] items;
+
+    /**
+     * @param itemCount the amount of stacks in items, -1 if it was saved by an older version and is unknown
+     */
+    public GraveData(UUID id, UUID owner, UUID world, double x, double y, double z, float yaw, long spawned, int xp, int itemCount, byte[] items) {
+        this.id = id;
+        this.owner = owner;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.spawned = spawned;
+        this.xp = xp;
+        this.itemCount = itemCount;
+        this.items = items;
+    }
+
+    /**
+     * @param counted whether the record was written with the item count, older records weren't
+     */
+    @NotNull
+    public static GraveData read(@NotNull DataInput in, boolean counted) throws IOException {
+        UUID id = readUUID(in);
+        UUID owner = readUUID(in);
+        UUID world = readUUID(in);
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        float yaw = in.readFloat();
+        long spawned = in.readLong();
+        int xp = in.readInt();
+        int itemCount = counted ? in.readInt() : -1;
+        byte[] items = new byte[in.readInt()];
+        in.readFully(items);
+        return new GraveData(id, owner, world, x, y, z, yaw, spawned, xp, itemCount, items);
+    }
+
+    public void write(@NotNull DataOutput out) throws IOException {
+        writeUUID(out, id);
+        writeUUID(out, owner);
+        writeUUID(out, world);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(z);
+        out.writeFloat(yaw);
+        out.writeLong(spawned);
+        out.writeInt(xp);
+        out.writeInt(itemCount);
+        out.writeInt(items.length);
+        out.write(items);
+    }
+
+    static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeUUID(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public UUID getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public long getSpawned() {
+        return spawned;
+    }
+
+    public int getXp() {
+        return xp;
+    }
+
+    void setXp(int xp) {
+        this.xp = xp;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public byte[] getItems() {
+        return items;
+    }
+
+    GraveData withItems(int itemCount, byte[] items) {
+        return new GraveData(id, owner, world, x, y, z, yaw, spawned, xp, itemCount, items);
+    }
+
+    void setItems(int itemCount, byte[] items) {
+        this.itemCount = itemCount;
+        this.items = items;
+    }
+}
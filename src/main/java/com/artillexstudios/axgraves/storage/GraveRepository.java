@@ -0,0 +1,43 @@
+package com.artillexstudios.axgraves.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Backend that keeps saved graves. Every method is called from the save executor or while the plugin
+ * is enabling and disabling, never from two threads at once.
+ */
+public interface GraveRepository {
+
+    @NotNull
+    Collection<GraveData> load(@NotNull UUID world) throws IOException;
+
+    /**
+     * Applies a batch of changes as a whole. Changes are idempotent, a failed batch is retried later.
+     */
+    void write(@NotNull Collection<GraveChange> changes) throws IOException;
+
+    /**
+     * Adds fully known graves, used when moving graves over from another storage.
+     */
+    void insert(@NotNull Collection<GraveData> graves) throws IOException;
+
+    @NotNull
+    List<GraveSummary> findByOwner(@NotNull UUID owner) throws IOException;
+
+    @NotNull
+    List<GraveSummary> findInArea(@NotNull UUID world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException;
+
+    /**
+     * Makes everything written so far durable in its final form, so the next start has nothing to replay.
+     */
+    void checkpoint() throws IOException;
+
+    void unload(@NotNull UUID world);
+
+    void close();
+}
@@ -0,0 +1,427 @@
+package com.artillexstudios.axgraves.storage;
+
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A snapshot and journal file pair holding the graves of a single world. Item stacks are stored once per shard
+ * and referenced by their hash, see {@link ItemPayload}. Since version 3 the records of a snapshot are deflated.
+ * <p>
+ * Record layout: {@code [int length][byte type][payload][int crc32(type + payload)]}
+ */
+class GraveShard {
+    private static final int SNAPSHOT_MAGIC = 0x41584756;
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    // version 1 records, still read but no longer written
+    private static final byte LEGACY_CREATE = 1;
+    private static final byte LEGACY_ITEMS = 2;
+    private static final byte XP = 3;
+    private static final byte REMOVE = 4;
+    // the same records with the stack count in front of the items
+    private static final byte CREATE = 5;
+    private static final byte ITEMS = 6;
+    private static final byte STACK = 7;
+
+    private final File folder;
+    private final File journalFile;
+    private final File snapshotFile;
+    // stacks already in the files, an empty set only means some get written twice
+    private final Set<UUID> stacks = new HashSet<>();
+    private FileOutputStream journalStream = null;
+    private DataOutputStream journal = null;
+
+    GraveShard(@NotNull File folder, @NotNull String name) {
+        this.folder = folder;
+        this.journalFile = new File(folder, name + ".journal");
+        this.snapshotFile = new File(folder, name + ".snapshot");
+    }
+
+    boolean exists() {
+        return journalFile.exists() || snapshotFile.exists();
+    }
+
+    /**
+     * Replays the snapshot and the journal, dropping a torn tail left behind by a crash. A replayed journal
+     * is folded into a new snapshot right away, so the next start doesn't have to replay it again.
+     * A damaged snapshot fails the load and is left as it is.
+     */
+    @NotNull
+    synchronized Collection<GraveData> load() throws IOException {
+        closeJournal();
+
+        final Map<UUID, GraveData> graves = new LinkedHashMap<>();
+        final Map<UUID, byte[]> stackData = new HashMap<>();
+        read(snapshotFile, graves, stackData, true);
+        final long valid = read(journalFile, graves, stackData, false);
+        stacks.clear();
+        stacks.addAll(stackData.keySet());
+        if (journalFile.length() > valid) {
+            Bukkit.getLogger().warning("[AxGraves] Discarding " + (journalFile.length() - valid) + " bytes of incomplete grave journal data in " + journalFile.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+
+        if (valid > 0) {
+            try {
+                writeSnapshot(graves.values());
+            } catch (IOException ex) {
+                // the journal is kept as it is, the next start replays it again
+                Bukkit.getLogger().severe("[AxGraves] Failed to checkpoint grave journal " + journalFile.getName() + ": " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        }
+
+        return graves.values();
+    }
+
+    /**
+     * Reads the graves without changing any file, a torn journal tail is only skipped.
+     */
+    @NotNull
+    synchronized Collection<GraveData> scan() throws IOException {
+        final Map<UUID, GraveData> graves = new LinkedHashMap<>();
+        final Map<UUID, byte[]> stackData = new HashMap<>();
+        read(snapshotFile, graves, stackData, true);
+        read(journalFile, graves, stackData, false);
+        return graves.values();
+    }
+
+    synchronized void write(@NotNull Collection<GraveChange> changes) throws IOException {
+        final DataOutputStream out = getJournal();
+        final long start = journalFile.length();
+        try {
+            for (GraveChange change : changes) {
+                write(out, change);
+            }
+            out.flush();
+            journalStream.getFD().sync();
+        } catch (IOException ex) {
+            rollback(start);
+            throw ex;
+        }
+
+        if (journalFile.length() > Math.max(MIN_COMPACT_BYTES, snapshotFile.length())) {
+            compact();
+        }
+    }
+
+    synchronized void append(@NotNull Collection<GraveData> graves) throws IOException {
+        final DataOutputStream out = getJournal();
+        final long start = journalFile.length();
+        try {
+            for (GraveData data : graves) {
+                writeGrave(out, data, stacks);
+            }
+            out.flush();
+            journalStream.getFD().sync();
+        } catch (IOException ex) {
+            rollback(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Cuts a failed batch off the journal, a retry appending after half a record would be lost on the next load
+     * together with everything written after it.
+     */
+    private void rollback(long start) throws IOException {
+        closeJournal();
+        stacks.clear();
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.setLength(start);
+        }
+    }
+
+    /**
+     * Compacts the shard if its journal holds anything.
+     */
+    synchronized void checkpoint() {
+        if (journalFile.length() == 0) return;
+        compact();
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot. Only the files are read, live graves are never touched.
+     */
+    synchronized void compact() {
+        closeJournal();
+
+        try {
+            final Map<UUID, GraveData> graves = new LinkedHashMap<>();
+            final Map<UUID, byte[]> stackData = new HashMap<>();
+            read(snapshotFile, graves, stackData, true);
+            read(journalFile, graves, stackData, false);
+            writeSnapshot(graves.values());
+        } catch (IOException ex) {
+            Bukkit.getLogger().severe("[AxGraves] Failed to compact grave journal " + journalFile.getName() + ": " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given graves, the journal is only emptied once the new snapshot is durable.
+     */
+    private void writeSnapshot(Collection<GraveData> graves) throws IOException {
+        closeJournal();
+
+        // only the stacks still referenced end up in the new snapshot
+        final Set<UUID> written = new HashSet<>();
+        final File temp = new File(snapshotFile.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            final DataOutputStream header = new DataOutputStream(fos);
+            header.writeInt(SNAPSHOT_MAGIC);
+            header.writeInt(SNAPSHOT_VERSION);
+
+            final DeflaterOutputStream deflater = new DeflaterOutputStream(new BufferedOutputStream(fos));
+            final DataOutputStream out = new DataOutputStream(deflater);
+            for (GraveData data : graves) {
+                writeGrave(out, data, written);
+            }
+            deflater.finish();
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        stacks.clear();
+        stacks.addAll(written);
+
+        journalStream = new FileOutputStream(journalFile, false);
+        journal = new DataOutputStream(new BufferedOutputStream(journalStream));
+    }
+
+    synchronized void close() {
+        closeJournal();
+    }
+
+    synchronized void delete() {
+        closeJournal();
+        journalFile.delete();
+        snapshotFile.delete();
+    }
+
+    private long read(File file, Map<UUID, GraveData> graves, Map<UUID, byte[]> stackData, boolean snapshot) throws IOException {
+        if (!file.exists()) return 0;
+
+        long valid = 0;
+        int records = 0;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fis));
+            if (snapshot) {
+                if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Invalid grave snapshot header in " + file.getName());
+                final int version = in.readInt();
+                if (version < 1 || version > SNAPSHOT_VERSION) throw new IOException("Unsupported grave snapshot version " + version + " in " + file.getName());
+                if (version >= 3) in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+                valid = 8;
+            }
+            final long limit = snapshot ? MAX_RECORD_BYTES : file.length();
+
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if (length < 0 || length > limit) {
+                    if (snapshot) throw corrupt(file, records);
+                    break;
+                }
+
+                final byte type;
+                final byte[] payload = new byte[length];
+                final int crc;
+                try {
+                    type = in.readByte();
+                    in.readFully(payload);
+                    crc = in.readInt();
+                } catch (EOFException ex) {
+                    if (snapshot) throw corrupt(file, records);
+                    break;
+                }
+                if (crc != checksum(type, payload)) {
+                    if (snapshot) throw corrupt(file, records);
+                    break;
+                }
+
+                apply(type, new DataInputStream(new ByteArrayInputStream(payload)), graves, stackData);
+                valid += 9L + length;
+                records++;
+            }
+        }
+        return valid;
+    }
+
+    // only a journal can end in a torn record, a snapshot is written completely before it replaces the old one
+    private static IOException corrupt(File file, int records) {
+        return new IOException("Grave snapshot " + file.getName() + " is damaged after " + records + " record(s), it was left untouched");
+    }
+
+    private static void apply(byte type, DataInputStream in, Map<UUID, GraveData> graves, Map<UUID, byte[]> stackData) throws IOException {
+        switch (type) {
+            case CREATE, LEGACY_CREATE -> {
+                final GraveData data = GraveData.read(in, type == CREATE);
+                graves.put(data.getId(), data.withItems(data.getItemCount(), ItemPayload.fromStored(data.getItems(), stackData::get)));
+            }
+            case ITEMS, LEGACY_ITEMS -> {
+                final GraveData data = graves.get(GraveData.readUUID(in));
+                if (data == null) return;
+                final int itemCount = type == ITEMS ? in.readInt() : -1;
+                final byte[] items = new byte[in.readInt()];
+                in.readFully(items);
+                data.setItems(itemCount, ItemPayload.fromStored(items, stackData::get));
+            }
+            case XP -> {
+                final GraveData data = graves.get(GraveData.readUUID(in));
+                if (data == null) return;
+                data.setXp(in.readInt());
+            }
+            case REMOVE -> graves.remove(GraveData.readUUID(in));
+            case STACK -> {
+                final UUID hash = GraveData.readUUID(in);
+                final byte[] stack = new byte[in.readInt()];
+                in.readFully(stack);
+                stackData.put(hash, stack);
+            }
+            default -> throw new IOException("Unknown grave journal record type " + type);
+        }
+    }
+
+    private void write(DataOutputStream out, GraveChange change) throws IOException {
+        final UUID id = change.getId();
+
+        if (change.isRemoved()) {
+            out.write(encode(REMOVE, o -> GraveData.writeUUID(o, id)));
+            return;
+        }
+
+        if (change.isCreated()) {
+            writeGrave(out, change.toData(), stacks);
+            return;
+        }
+
+        if (change.hasItems()) {
+            final byte[] items = storeItems(out, change.encodeItems(), stacks);
+            final int itemCount = change.getItemCount();
+            out.write(encode(ITEMS, o -> {
+                GraveData.writeUUID(o, id);
+                o.writeInt(itemCount);
+                o.writeInt(items.length);
+                o.write(items);
+            }));
+        }
+
+        if (change.hasXp()) {
+            final int xp = change.getXp();
+            out.write(encode(XP, o -> {
+                GraveData.writeUUID(o, id);
+                o.writeInt(xp);
+            }));
+        }
+    }
+
+    private static void writeGrave(DataOutputStream out, GraveData data, Set<UUID> written) throws IOException {
+        final GraveData stored = data.withItems(data.getItemCount(), storeItems(out, data.getItems(), written));
+        out.write(encode(CREATE, stored::write));
+    }
+
+    /**
+     * Writes the stacks of a payload not yet in the file, the returned items only reference them.
+     */
+    private static byte[] storeItems(DataOutputStream out, byte[] payload, Set<UUID> written) throws IOException {
+        return ItemPayload.toStored(payload, (hash, stack) -> {
+            if (!written.add(hash)) return;
+            out.write(encode(STACK, o -> {
+                GraveData.writeUUID(o, hash);
+                o.writeInt(stack.length);
+                o.write(stack);
+            }));
+        });
+    }
+
+    private static byte[] encode(byte type, RecordWriter writer) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(payload));
+        final byte[] bytes = payload.toByteArray();
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 9);
+        final DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(bytes.length);
+        out.writeByte(type);
+        out.write(bytes);
+        out.writeInt(checksum(type, bytes));
+        return record.toByteArray();
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private DataOutputStream getJournal() throws IOException {
+        if (journal == null) {
+            folder.mkdirs();
+            journalStream = new FileOutputStream(journalFile, true);
+            journal = new DataOutputStream(new BufferedOutputStream(journalStream));
+        }
+        return journal;
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        journal = null;
+        journalStream = null;
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // not supported on every platform, the rename itself is still atomic
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
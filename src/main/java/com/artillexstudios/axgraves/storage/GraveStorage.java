@@ -0,0 +1,361 @@
+package com.artillexstudios.axgraves.storage;
+
+import com.artillexstudios.axapi.scheduler.Scheduler;
+import com.artillexstudios.axgraves.AxGraves;
+import com.artillexstudios.axgraves.config.Settings;
+import com.artillexstudios.axgraves.grave.Grave;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import static com.artillexstudios.axgraves.AxGraves.EXECUTOR;
+
+/**
+ * Saves graves through the configured {@link GraveRepository}. Mutations mark a grave dirty and schedule a log
+ * flush shortly after, which copies every dirty grave on the thread owning it, then encodes and writes the batch on
+ * the save executor. Autosave only checkpoints what the flushes wrote.
+ */
+public class GraveStorage {
+    static final int DIRTY_CREATED = 1;
+    static final int DIRTY_ITEMS = 1 << 1;
+    static final int DIRTY_XP = 1 << 2;
+    static final int DIRTY_REMOVED = 1 << 3;
+
+    private static final ConcurrentHashMap<Grave, Integer> dirty = new ConcurrentHashMap<>();
+    private static final Set<Grave> inFlight = ConcurrentHashMap.newKeySet();
+    // graves whose creation was handed to the repository, a failed batch may still have stored them in part
+    private static final Set<Grave> stored = ConcurrentHashMap.newKeySet();
+    private static CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private static GraveRepository repository = null;
+    private static boolean migrated = false;
+    private static volatile boolean written = false;
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    public static void markCreated(@NotNull Grave grave) {
+        markDirty(grave, DIRTY_CREATED);
+    }
+
+    public static void markItems(@NotNull Grave grave) {
+        markDirty(grave, DIRTY_ITEMS);
+    }
+
+    public static void markXp(@NotNull Grave grave) {
+        markDirty(grave, DIRTY_XP);
+    }
+
+    public static void markRemoved(@NotNull Grave grave) {
+        markDirty(grave, DIRTY_REMOVED);
+    }
+
+    public static boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    private static void markDirty(Grave grave, int flag) {
+        if (!isEnabled()) return;
+        dirty.merge(grave, flag, (a, b) -> a | b);
+        scheduleFlush();
+    }
+
+    /**
+     * Groups the mutations of the next few milliseconds into a single log write.
+     */
+    private static void scheduleFlush() {
+        final int millis = Settings.get().logFlushMillis;
+        if (millis < 0) return;
+        if (!flushScheduled.compareAndSet(false, true)) return;
+
+        try {
+            EXECUTOR.schedule(() -> {
+                flushScheduled.set(false);
+                save();
+            }, millis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // shutting down, saveNow picks the changes up
+            flushScheduled.set(false);
+        }
+    }
+
+    /**
+     * Reads the saved graves of a single world on the executor, after every write started before.
+     */
+    @NotNull
+    public static synchronized CompletableFuture<Collection<GraveData>> load(@NotNull UUID world) {
+        return lastWrite.thenApplyAsync(v -> {
+            migrateSingleStore();
+
+            try {
+                importFileShard(world);
+                return getRepository().load(world);
+            } catch (IOException ex) {
+                Bukkit.getLogger().severe("[AxGraves] Error reading graves of world " + world + ": " + ex.getMessage());
+                ex.printStackTrace();
+                return List.of();
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Starts a save of every dirty grave. The graves are copied on the thread owning their location,
+     * encoding and writing happen on the executor, in the order the saves were started.
+     */
+    public static synchronized void save() {
+        if (dirty.isEmpty()) return;
+
+        final List<Grave> batch = new ArrayList<>(dirty.size());
+        final List<CompletableFuture<GraveChange>> captures = new ArrayList<>(dirty.size());
+        for (Grave grave : dirty.keySet()) {
+            // still waiting for the previous save, the next one picks the changes up
+            if (!inFlight.add(grave)) continue;
+
+            final CompletableFuture<GraveChange> future = new CompletableFuture<>();
+            Scheduler.get().runAt(grave.getLocation(), () -> future.complete(capture(grave)));
+            batch.add(grave);
+            captures.add(future);
+        }
+
+        lastWrite = CompletableFuture.allOf(captures.toArray(CompletableFuture[]::new))
+                .thenCombine(lastWrite, (a, b) -> null)
+                .thenRunAsync(() -> {
+                    try {
+                        write(captures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList());
+                    } finally {
+                        batch.forEach(inFlight::remove);
+                        // graves skipped for being in flight are still dirty, nothing else would flush them
+                        if (!dirty.isEmpty()) scheduleFlush();
+                    }
+                }, EXECUTOR);
+    }
+
+    /**
+     * Starts a save of every dirty grave, completes once it and every write started before are done.
+     */
+    @NotNull
+    public static synchronized CompletableFuture<Void> flush() {
+        save();
+        return lastWrite;
+    }
+
+    /**
+     * Saves every dirty grave on the calling thread. Only meant for enabling and disabling the plugin,
+     * when the scheduler can no longer be relied on.
+     */
+    public static void saveNow() {
+        try {
+            // let writes already queued on the executor finish first, so they can't land after this one
+            EXECUTOR.submit(() -> {}).get(10, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // the remaining in flight graves are written below
+        }
+
+        final Set<Grave> pending = new HashSet<>(dirty.keySet());
+        pending.addAll(inFlight);
+        write(captureNow(pending));
+    }
+
+    /**
+     * Checkpoints the storage after the writes started before, if anything was written since the last one.
+     */
+    public static synchronized void checkpoint() {
+        lastWrite = lastWrite.thenRunAsync(() -> {
+            if (!written) return;
+            written = false;
+
+            try {
+                getRepository().checkpoint();
+            } catch (Exception ex) {
+                written = true;
+                Bukkit.getLogger().severe("[AxGraves] Failed to checkpoint graves: " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Looks up the saved graves of a player, without reading their items.
+     */
+    @NotNull
+    public static CompletableFuture<List<GraveSummary>> findByOwner(@NotNull UUID owner) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return getRepository().findByOwner(owner);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Looks up the saved graves inside a rectangle of chunks, bounds included, without reading their items.
+     */
+    @NotNull
+    public static CompletableFuture<List<GraveSummary>> findInArea(@NotNull UUID world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return getRepository().findInArea(world, minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Writes the pending changes of the graves of an unloading world and releases its storage afterwards.
+     * Must be called on the thread owning the graves.
+     */
+    public static synchronized void unload(@NotNull UUID world, @NotNull Collection<Grave> graves) {
+        final List<GraveChange> changes = captureNow(graves);
+
+        lastWrite = lastWrite.thenRunAsync(() -> {
+            write(changes);
+            stored.removeAll(graves);
+            getRepository().unload(world);
+        }, EXECUTOR);
+    }
+
+    public static void close() {
+        saveNow();
+        synchronized (GraveStorage.class) {
+            if (repository == null) return;
+            repository.close();
+            repository = null;
+        }
+    }
+
+    private static List<GraveChange> captureNow(Collection<Grave> graves) {
+        final List<GraveChange> changes = new ArrayList<>(graves.size());
+        for (Grave grave : graves) {
+            Integer flags = dirty.remove(grave);
+            if (flags == null) flags = 0;
+            // an unfinished save could have taken the flags, write the full state instead
+            if (inFlight.remove(grave)) flags = grave.isRemoved() ? DIRTY_REMOVED : flags | DIRTY_CREATED;
+            if (flags == 0 || isTransient(grave, flags)) continue;
+
+            try {
+                changes.add(GraveChange.capture(grave, flags));
+            } catch (Exception ex) {
+                Bukkit.getLogger().warning("[AxGraves] Failed to save a grave: " + ex.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    private static GraveChange capture(Grave grave) {
+        final Integer flags = dirty.remove(grave);
+        if (flags == null || isTransient(grave, flags)) return null;
+
+        try {
+            return GraveChange.capture(grave, flags);
+        } catch (Exception ex) {
+            markDirty(grave, flags);
+            Bukkit.getLogger().warning("[AxGraves] Failed to save a grave: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(List<GraveChange> changes) {
+        if (changes.isEmpty()) return;
+
+        for (GraveChange change : changes) {
+            if ((change.getFlags() & DIRTY_CREATED) != 0) stored.add(change.getGrave());
+        }
+
+        try {
+            getRepository().write(changes);
+            written = true;
+            for (GraveChange change : changes) {
+                if ((change.getFlags() & DIRTY_REMOVED) != 0) stored.remove(change.getGrave());
+            }
+        } catch (Exception ex) {
+            Bukkit.getLogger().severe("[AxGraves] Failed to write graves: " + ex.getMessage());
+            ex.printStackTrace();
+            // changes are idempotent, writing them again on the next save is fine
+            for (GraveChange change : changes) {
+                markDirty(change.getGrave(), change.getFlags());
+            }
+        }
+    }
+
+    /**
+     * Created and removed between two saves, the repository never knew about the grave. A create re-marked after a
+     * failed write doesn't count, other worlds of that batch could have been written.
+     */
+    private static boolean isTransient(Grave grave, int flags) {
+        return (flags & (DIRTY_CREATED | DIRTY_REMOVED)) == (DIRTY_CREATED | DIRTY_REMOVED) && !stored.contains(grave);
+    }
+
+    /**
+     * Older versions kept every world in a single {@code graves.journal}, split it into world shards once.
+     */
+    private static synchronized void migrateSingleStore() {
+        if (migrated) return;
+        migrated = true;
+
+        final GraveShard legacy = new GraveShard(AxGraves.getInstance().getDataFolder(), "graves");
+        if (!legacy.exists()) return;
+
+        try {
+            getRepository().insert(legacy.load());
+            legacy.delete();
+        } catch (IOException ex) {
+            Bukkit.getLogger().severe("[AxGraves] Failed to split the grave journal into world files: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Moves the file shard of a world into the database, when the server switched from file storage.
+     */
+    private static void importFileShard(UUID world) throws IOException {
+        if (getRepository() instanceof FileGraveRepository) return;
+
+        final FileGraveRepository files = new FileGraveRepository(getFolder());
+        if (!files.exists(world)) return;
+
+        final Collection<GraveData> graves = files.load(world);
+        getRepository().insert(graves);
+        files.delete(world);
+        Bukkit.getLogger().info("[AxGraves] Imported " + graves.size() + " graves of world " + world + " into the database.");
+    }
+
+    private static synchronized GraveRepository getRepository() {
+        if (repository != null) return repository;
+
+        if (CONFIG.getString("save-graves.storage", "file").equalsIgnoreCase("sqlite")) {
+            try {
+                repository = new SqliteGraveRepository(new File(AxGraves.getInstance().getDataFolder(), "graves.db"));
+                return repository;
+            } catch (IOException ex) {
+                Bukkit.getLogger().severe("[AxGraves] Failed to open the grave database, falling back to file storage: " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        }
+
+        repository = new FileGraveRepository(getFolder());
+        return repository;
+    }
+
+    private static File getFolder() {
+        return new File(AxGraves.getInstance().getDataFolder(), "graves");
+    }
+
+    private static boolean isEnabled() {
+        return Settings.get().saveGraves;
+    }
+}
@@ -0,0 +1,73 @@
+package com.artillexstudios.axgraves.storage;
+
+import java.util.UUID;
+
+/**
+ * A saved grave without its items.
+ */
+public class GraveSummary {
+    private final UUID id;
+    private final UUID owner;
+    private final UUID world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final long spawned;
+    private final int xp;
+    private final int itemCount;
+
+    public GraveSummary(UUID id, UUID owner, UUID world, double x, double y, double z, long spawned, int xp, int itemCount) {
+        this.id = id;
+        this.owner = owner;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.spawned = spawned;
+        this.xp = xp;
+        this.itemCount = itemCount;
+    }
+
+    static GraveSummary of(GraveData data) {
+        return new GraveSummary(data.getId(), data.getOwner(), data.getWorld(), data.getX(), data.getY(), data.getZ(), data.getSpawned(), data.getXp(), data.getItemCount());
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public UUID getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public long getSpawned() {
+        return spawned;
+    }
+
+    public int getXp() {
+        return xp;
+    }
+
+    /**
+     * The amount of item stacks, -1 for graves saved by older versions.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,182 @@
+package com.artillexstudios.axgraves.storage;
+
+import com.artillexstudios.axapi.serializers.Serializers;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format of the items of a grave, every slot is serialized on its own so identical stacks can be
+ * stored once and referenced by their hash.
+ * <p>
+ * Payload: {@code [int magic][int slots]} then per slot {@code [int length, -1 if empty][bytes]}<br>
+ * Stored: {@code [int magic][int slots]} then per slot {@code [byte 0]} if empty or {@code [byte 1][128 bit hash]}
+ * <p>
+ * Payloads written before this format are a single {@link Serializers#ITEM_ARRAY} blob, they are still read.
+ */
+public class ItemPayload {
+    private static final int PAYLOAD_MAGIC = 0x41584901;
+    private static final int STORED_MAGIC = 0x41585201;
+
+    @NotNull
+    public static byte[] encode(@NotNull ItemStack[] items) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(PAYLOAD_MAGIC);
+            out.writeInt(items.length);
+            for (ItemStack it : items) {
+                if (it == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                final byte[] stack = Serializers.ITEM_ARRAY.serialize(new ItemStack[]{it});
+                out.writeInt(stack.length);
+                out.write(stack);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    @NotNull
+    public static ItemStack[] decode(@NotNull byte[] payload) {
+        if (!hasMagic(payload, PAYLOAD_MAGIC)) return Serializers.ITEM_ARRAY.deserialize(payload);
+
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 4, payload.length - 4));
+            final ItemStack[] items = new ItemStack[in.readInt()];
+            for (int i = 0; i < items.length; i++) {
+                final int length = in.readInt();
+                if (length == -1) continue;
+                final byte[] stack = new byte[length];
+                in.readFully(stack);
+                items[i] = Serializers.ITEM_ARRAY.deserialize(stack)[0];
+            }
+            return items;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Replaces every stack of a payload with its hash, the stacks themselves are handed to the sink.
+     * Payloads in the old format are returned as they are.
+     */
+    @NotNull
+    static byte[] toStored(@NotNull byte[] payload, @NotNull StackSink sink) throws IOException {
+        if (!hasMagic(payload, PAYLOAD_MAGIC)) return payload;
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 4, payload.length - 4));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final int slots = in.readInt();
+        out.writeInt(STORED_MAGIC);
+        out.writeInt(slots);
+        for (int i = 0; i < slots; i++) {
+            final int length = in.readInt();
+            if (length == -1) {
+                out.writeByte(0);
+                continue;
+            }
+            final byte[] stack = new byte[length];
+            in.readFully(stack);
+            final UUID hash = hash(stack);
+            sink.accept(hash, stack);
+            out.writeByte(1);
+            GraveData.writeUUID(out, hash);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Turns stored items back into a payload. A stack that can't be found leaves its slot empty.
+     */
+    @NotNull
+    static byte[] fromStored(@NotNull byte[] stored, @NotNull Function<UUID, byte[]> stacks) throws IOException {
+        if (!hasMagic(stored, STORED_MAGIC)) return stored;
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored, 4, stored.length - 4));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final int slots = in.readInt();
+        out.writeInt(PAYLOAD_MAGIC);
+        out.writeInt(slots);
+        for (int i = 0; i < slots; i++) {
+            if (in.readByte() == 0) {
+                out.writeInt(-1);
+                continue;
+            }
+            final byte[] stack = stacks.apply(GraveData.readUUID(in));
+            if (stack == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(stack.length);
+            out.write(stack);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Hands every stack hash referenced by stored items to the consumer.
+     */
+    static void forEachStack(@NotNull byte[] stored, @NotNull Consumer<UUID> consumer) throws IOException {
+        if (!hasMagic(stored, STORED_MAGIC)) return;
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored, 4, stored.length - 4));
+        final int slots = in.readInt();
+        for (int i = 0; i < slots; i++) {
+            if (in.readByte() == 0) continue;
+            consumer.accept(GraveData.readUUID(in));
+        }
+    }
+
+    static byte[] deflate(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] inflate(byte[] bytes) throws IOException {
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+            return inflater.readAllBytes();
+        }
+    }
+
+    private static UUID hash(byte[] stack) {
+        try {
+            final ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(stack));
+            return new UUID(digest.getLong(), digest.getLong());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static boolean hasMagic(byte[] bytes, int magic) {
+        if (bytes.length < 8) return false;
+        return ByteBuffer.wrap(bytes).getInt() == magic;
+    }
+
+    @FunctionalInterface
+    interface StackSink {
+        void accept(UUID hash, byte[] stack) throws IOException;
+    }
+}
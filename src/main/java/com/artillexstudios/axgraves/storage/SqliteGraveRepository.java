@@ -0,0 +1,355 @@
+package com.artillexstudios.axgraves.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps graves in an embedded SQLite database, indexed by owner and by world chunk. Item stacks are deflated
+ * and stored once in their own table, graves only reference them, see {@link ItemPayload}.
+ * Spigot ships the SQLite driver, so no extra dependency is needed.
+ */
+public class SqliteGraveRepository implements GraveRepository {
+    private static final String TABLE = "axgraves_graves";
+    private static final String STACKS = "axgraves_stacks";
+    private static final String SUMMARY_COLUMNS = "id, owner, world, x, y, z, spawned, xp, item_count";
+    private static final String UPSERT = "INSERT OR REPLACE INTO " + TABLE + " (id, owner, world, chunk_x, chunk_z, x, y, z, yaw, spawned, xp, item_count, items) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final Connection connection;
+    // stacks already in the database, an empty set only means some get inserted twice
+    private final Set<UUID> stacks = new HashSet<>();
+
+    public SqliteGraveRepository(@NotNull File file) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            file.getParentFile().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                        "id VARCHAR(36) PRIMARY KEY, " +
+                        "owner VARCHAR(36) NOT NULL, " +
+                        "world VARCHAR(36) NOT NULL, " +
+                        "chunk_x INT NOT NULL, " +
+                        "chunk_z INT NOT NULL, " +
+                        "x DOUBLE NOT NULL, " +
+                        "y DOUBLE NOT NULL, " +
+                        "z DOUBLE NOT NULL, " +
+                        "yaw FLOAT NOT NULL, " +
+                        "spawned BIGINT NOT NULL, " +
+                        "xp INT NOT NULL, " +
+                        "item_count INT NOT NULL DEFAULT -1, " +
+                        "items BLOB NOT NULL)");
+                addItemCount(statement);
+                statement.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_owner ON " + TABLE + " (owner, spawned)");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_chunk ON " + TABLE + " (world, chunk_x, chunk_z)");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_spawned ON " + TABLE + " (spawned)");
+                statement.execute("CREATE TABLE IF NOT EXISTS " + STACKS + " (" +
+                        "hash VARCHAR(36) PRIMARY KEY, " +
+                        "data BLOB NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            removeUnusedStacks();
+            connection.commit();
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new IOException("Failed to open grave database " + file.getName(), ex);
+        }
+    }
+
+    @NotNull
+    @Override
+    public synchronized Collection<GraveData> load(@NotNull UUID world) throws IOException {
+        final List<GraveData> graves = new ArrayList<>();
+        final Map<UUID, byte[]> stackData = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id, owner, x, y, z, yaw, spawned, xp, item_count, items FROM " + TABLE + " WHERE world = ?");
+             PreparedStatement stack = connection.prepareStatement("SELECT data FROM " + STACKS + " WHERE hash = ?")) {
+            statement.setString(1, world.toString());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    final GraveData data = new GraveData(
+                            UUID.fromString(rs.getString(1)),
+                            UUID.fromString(rs.getString(2)),
+                            world,
+                            rs.getDouble(3), rs.getDouble(4), rs.getDouble(5), rs.getFloat(6),
+                            rs.getLong(7),
+                            rs.getInt(8),
+                            rs.getInt(9),
+                            rs.getBytes(10)
+                    );
+                    ItemPayload.forEachStack(data.getItems(), hash -> stackData.put(hash, null));
+                    graves.add(data);
+                }
+            }
+
+            for (UUID hash : stackData.keySet()) {
+                stack.setString(1, hash.toString());
+                try (ResultSet rs = stack.executeQuery()) {
+                    if (rs.next()) stackData.put(hash, ItemPayload.inflate(rs.getBytes(1)));
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex);
+        }
+
+        final List<GraveData> loaded = new ArrayList<>(graves.size());
+        for (GraveData data : graves) {
+            loaded.add(data.withItems(data.getItemCount(), ItemPayload.fromStored(data.getItems(), stackData::get)));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized void write(@NotNull Collection<GraveChange> changes) throws IOException {
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+             PreparedStatement items = connection.prepareStatement("UPDATE " + TABLE + " SET item_count = ?, items = ? WHERE id = ?");
+             PreparedStatement xp = connection.prepareStatement("UPDATE " + TABLE + " SET xp = ? WHERE id = ?");
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE id = ?");
+             PreparedStatement stack = connection.prepareStatement("INSERT OR IGNORE INTO " + STACKS + " (hash, data) VALUES (?, ?)")) {
+
+            for (GraveChange change : changes) {
+                final String id = change.getId().toString();
+
+                if (change.isRemoved()) {
+                    delete.setString(1, id);
+                    delete.addBatch();
+                    continue;
+                }
+
+                if (change.isCreated()) {
+                    bind(upsert, change.toData(), stack);
+                    upsert.addBatch();
+                    continue;
+                }
+
+                if (change.hasItems()) {
+                    items.setInt(1, change.getItemCount());
+                    items.setBytes(2, storeItems(change.encodeItems(), stack));
+                    items.setString(3, id);
+                    items.addBatch();
+                }
+
+                if (change.hasXp()) {
+                    xp.setInt(1, change.getXp());
+                    xp.setString(2, id);
+                    xp.addBatch();
+                }
+            }
+
+            stack.executeBatch();
+            upsert.executeBatch();
+            items.executeBatch();
+            xp.executeBatch();
+            delete.executeBatch();
+            connection.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex);
+        } catch (IOException ex) {
+            rollback();
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized void insert(@NotNull Collection<GraveData> graves) throws IOException {
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+             PreparedStatement stack = connection.prepareStatement("INSERT OR IGNORE INTO " + STACKS + " (hash, data) VALUES (?, ?)")) {
+            for (GraveData data : graves) {
+                bind(upsert, data, stack);
+                upsert.addBatch();
+            }
+            stack.executeBatch();
+            upsert.executeBatch();
+            connection.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex);
+        } catch (IOException ex) {
+            rollback();
+            throw ex;
+        }
+    }
+
+    @NotNull
+    @Override
+    public synchronized List<GraveSummary> findByOwner(@NotNull UUID owner) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + SUMMARY_COLUMNS + " FROM " + TABLE + " WHERE owner = ? ORDER BY spawned")) {
+            statement.setString(1, owner.toString());
+            return query(statement);
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex);
+        }
+    }
+
+    @NotNull
+    @Override
+    public synchronized List<GraveSummary> findInArea(@NotNull UUID world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + SUMMARY_COLUMNS + " FROM " + TABLE + " WHERE world = ? AND chunk_x BETWEEN ? AND ? AND chunk_z BETWEEN ? AND ?")) {
+            statement.setString(1, world.toString());
+            statement.setInt(2, minChunkX);
+            statement.setInt(3, maxChunkX);
+            statement.setInt(4, minChunkZ);
+            statement.setInt(5, maxChunkZ);
+            return query(statement);
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public synchronized void checkpoint() throws IOException {
+        try {
+            // a checkpoint can't run inside the transaction the driver keeps open
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            } finally {
+                connection.setAutoCommit(false);
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void unload(@NotNull UUID world) {
+        // every world shares the same connection
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private List<GraveSummary> query(PreparedStatement statement) throws SQLException {
+        final List<GraveSummary> found = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                found.add(new GraveSummary(
+                        UUID.fromString(rs.getString(1)),
+                        UUID.fromString(rs.getString(2)),
+                        UUID.fromString(rs.getString(3)),
+                        rs.getDouble(4), rs.getDouble(5), rs.getDouble(6),
+                        rs.getLong(7),
+                        rs.getInt(8),
+                        rs.getInt(9)
+                ));
+            }
+        }
+        connection.commit();
+        return found;
+    }
+
+    private void bind(PreparedStatement statement, GraveData data, PreparedStatement stack) throws SQLException, IOException {
+        statement.setString(1, data.getId().toString());
+        statement.setString(2, data.getOwner().toString());
+        statement.setString(3, data.getWorld().toString());
+        statement.setInt(4, (int) Math.floor(data.getX()) >> 4);
+        statement.setInt(5, (int) Math.floor(data.getZ()) >> 4);
+        statement.setDouble(6, data.getX());
+        statement.setDouble(7, data.getY());
+        statement.setDouble(8, data.getZ());
+        statement.setFloat(9, data.getYaw());
+        statement.setLong(10, data.getSpawned());
+        statement.setInt(11, data.getXp());
+        statement.setInt(12, data.getItemCount());
+        statement.setBytes(13, storeItems(data.getItems(), stack));
+    }
+
+    /**
+     * Queues the stacks of a payload not yet in the database, the returned items only reference them.
+     */
+    private byte[] storeItems(byte[] payload, PreparedStatement stack) throws IOException {
+        return ItemPayload.toStored(payload, (hash, bytes) -> {
+            if (!stacks.add(hash)) return;
+            try {
+                stack.setString(1, hash.toString());
+                stack.setBytes(2, ItemPayload.deflate(bytes));
+                stack.addBatch();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Deletes the stacks no grave references anymore, only done on startup.
+     */
+    private void removeUnusedStacks() throws SQLException {
+        final Set<UUID> used = new HashSet<>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT items FROM " + TABLE)) {
+                while (rs.next()) {
+                    ItemPayload.forEachStack(rs.getBytes(1), used::add);
+                }
+            } catch (IOException ex) {
+                // unreadable items, keep every stack
+                return;
+            }
+
+            final List<String> unused = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT hash FROM " + STACKS)) {
+                while (rs.next()) {
+                    final UUID hash = UUID.fromString(rs.getString(1));
+                    if (used.contains(hash)) stacks.add(hash);
+                    else unused.add(hash.toString());
+                }
+            }
+            if (unused.isEmpty()) return;
+
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + STACKS + " WHERE hash = ?")) {
+                for (String hash : unused) {
+                    delete.setString(1, hash);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Databases created before the item count was saved don't have the column yet.
+     */
+    private static void addItemCount(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("PRAGMA table_info(" + TABLE + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").equalsIgnoreCase("item_count")) return;
+            }
+        }
+        statement.execute("ALTER TABLE " + TABLE + " ADD COLUMN item_count INT NOT NULL DEFAULT -1");
+    }
+
+    private void rollback() {
+        stacks.clear();
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // nothing left to undo
+        }
+    }
+}
@@ -1,55 +1,182 @@
 package com.artillexstudios.axgraves.utils;
 
+import com.artillexstudios.axgraves.config.Settings;
+import org.bukkit.Material;
+import org.bukkit.enchantments.EnchantmentTarget;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import java.util.Map;
 
 public class InventoryUtils {
+    // where a piece of armor goes, worked out once instead of per item
+    private static final Map<Material, EquipmentSlot> ARMOR_SLOTS = armorSlots();
 
+    /**
+     * Puts the items of the configured slots first, the rest keeps its order. The kept items are copies of the
+     * inventory, so they are matched by type and amount first and only compared fully against stacks of the same
+     * bucket.
+     */
     @NotNull
     public static List<ItemStack> reorderInventory(@NotNull PlayerInventory inventory, @NotNull List<ItemStack> keptItems) {
-        final ArrayList<ItemStack> itemsBefore = new ArrayList<>(keptItems);
-        final ItemStack[] items = new ItemStack[itemsBefore.size()];
+        return reorder(Settings.get().graveItemOrder, inventory.getArmorContents(), inventory.getItemInMainHand(), inventory.getItemInOffHand(), keptItems);
+    }
+
+    @NotNull
+    static List<ItemStack> reorder(@NotNull List<String> order, ItemStack[] armor, ItemStack hand, ItemStack offHand, @NotNull List<ItemStack> keptItems) {
+        final ItemStack[] itemsBefore = keptItems.toArray(new ItemStack[0]);
+        final boolean[] taken = new boolean[itemsBefore.length];
+        final ItemStack[] items = new ItemStack[itemsBefore.length];
         int n = 0;
 
-        for (String str : CONFIG.getStringList("grave-item-order")) {
+        final Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < itemsBefore.length; i++) {
+            if (itemsBefore[i] == null) continue;
+            buckets.computeIfAbsent(bucket(itemsBefore[i]), k -> new ArrayList<>(1)).add(i);
+        }
+
+        for (String str : order) {
             switch (str) {
                 case "ARMOR" -> {
-                    for (ItemStack it : inventory.getArmorContents()) {
-                        if (!itemsBefore.contains(it)) continue;
-                        items[n] = it;
-                        itemsBefore.remove(it);
-                        n++;
+                    for (ItemStack it : armor) {
+                        final int slot = take(buckets, itemsBefore, taken, it);
+                        if (slot == -1) continue;
+                        items[n++] = itemsBefore[slot];
                     }
                 }
                 case "HAND" -> {
-                    if (!itemsBefore.contains(inventory.getItemInMainHand())) continue;
-                    items[n] = inventory.getItemInMainHand();
-                    itemsBefore.remove(inventory.getItemInMainHand());
-                    n++;
+                    final int slot = take(buckets, itemsBefore, taken, hand);
+                    if (slot == -1) continue;
+                    items[n++] = itemsBefore[slot];
                 }
                 case "OFFHAND" -> {
-                    if (!itemsBefore.contains(inventory.getItemInOffHand())) continue;
-                    items[n] = inventory.getItemInOffHand();
-                    itemsBefore.remove(inventory.getItemInOffHand());
-                    n++;
+                    final int slot = take(buckets, itemsBefore, taken, offHand);
+                    if (slot == -1) continue;
+                    items[n++] = itemsBefore[slot];
                 }
             }
         }
 
-        for (ItemStack it : itemsBefore) {
-            if (!itemsBefore.contains(it)) continue;
-            items[n] = it;
-            n++;
+        for (int i = 0; i < itemsBefore.length; i++) {
+            if (taken[i] || itemsBefore[i] == null) continue;
+            items[n++] = itemsBefore[i];
+        }
+
+        return Arrays.asList(items).subList(0, n);
+    }
+
+    // the first kept item equal to the one in the slot, -1 if there is none
+    private static int take(Map<Long, List<Integer>> buckets, ItemStack[] itemsBefore, boolean[] taken, ItemStack it) {
+        if (it == null) return -1;
+        final List<Integer> candidates = buckets.get(bucket(it));
+        if (candidates == null) return -1;
+
+        // type and amount already match, only the meta is left to compare
+        for (int i = 0; i < candidates.size(); i++) {
+            final int slot = candidates.get(i);
+            if (!it.isSimilar(itemsBefore[slot])) continue;
+            taken[slot] = true;
+            candidates.remove(i);
+            return slot;
         }
+        return -1;
+    }
+
+    // type and amount of a stack, read without touching its meta
+    private static long bucket(ItemStack it) {
+        return (long) it.getType().ordinal() << 32 | it.getAmount();
+    }
+
+    /**
+     * Moves everything from the loot into the player's inventory in one pass, armor is put on if the slot for it is
+     * free. Both inventories are only written once at the end.
+     *
+     * @return the amount of stacks left in the loot
+     */
+    public static int transfer(@NotNull Inventory loot, @NotNull PlayerInventory target, boolean equipArmor) {
+        final ItemStack[] items = loot.getContents();
+        final ItemStack[] storage = target.getStorageContents();
+        final ItemStack[] armor = target.getArmorContents();
+        boolean armorChanged = false;
+        int left = 0;
+
+        for (int i = 0; i < items.length; i++) {
+            final ItemStack it = items[i];
+            if (it == null) continue;
 
-        return Arrays.asList(items);
+            if (equipArmor) {
+                final EquipmentSlot slot = ARMOR_SLOTS.get(it.getType());
+                if (slot != null && armor[armorIndex(slot)] == null) {
+                    armor[armorIndex(slot)] = it;
+                    armorChanged = true;
+                    items[i] = null;
+                    continue;
+                }
+            }
+
+            int amount = it.getAmount();
+            final int max = it.getMaxStackSize();
+            // fill up matching stacks first, like addItem does
+            for (int j = 0; j < storage.length && amount > 0; j++) {
+                final ItemStack stack = storage[j];
+                if (stack == null || stack.getAmount() >= max || !stack.isSimilar(it)) continue;
+                final int moved = Math.min(amount, max - stack.getAmount());
+                stack.setAmount(stack.getAmount() + moved);
+                amount -= moved;
+            }
+            for (int j = 0; j < storage.length && amount > 0; j++) {
+                if (storage[j] != null) continue;
+                final ItemStack stack = it.clone();
+                stack.setAmount(Math.min(amount, max));
+                storage[j] = stack;
+                amount -= stack.getAmount();
+            }
+
+            if (amount == 0) {
+                items[i] = null;
+                continue;
+            }
+            final ItemStack rest = it.clone();
+            rest.setAmount(amount);
+            items[i] = rest;
+            left++;
+        }
+
+        target.setStorageContents(storage);
+        if (armorChanged) target.setArmorContents(armor);
+        loot.setContents(items);
+        return left;
+    }
+
+    // same order as getArmorContents
+    private static int armorIndex(EquipmentSlot slot) {
+        return switch (slot) {
+            case FEET -> 0;
+            case LEGS -> 1;
+            case CHEST -> 2;
+            default -> 3;
+        };
+    }
+
+    private static Map<Material, EquipmentSlot> armorSlots() {
+        final Map<Material, EquipmentSlot> slots = new EnumMap<>(Material.class);
+        for (Material material : Material.values()) {
+            if (material.isLegacy()) continue;
+
+            if (EnchantmentTarget.ARMOR_HEAD.includes(material) || material == Material.TURTLE_HELMET) slots.put(material, EquipmentSlot.HEAD);
+            else if (EnchantmentTarget.ARMOR_TORSO.includes(material) || material == Material.ELYTRA) slots.put(material, EquipmentSlot.CHEST);
+            else if (EnchantmentTarget.ARMOR_LEGS.includes(material)) slots.put(material, EquipmentSlot.LEGS);
+            else if (EnchantmentTarget.ARMOR_FEET.includes(material)) slots.put(material, EquipmentSlot.FEET);
+        }
+        return slots;
     }
 
     public static int getRequiredRows(int amount) {
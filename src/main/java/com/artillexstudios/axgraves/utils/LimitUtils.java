@@ -1,24 +1,71 @@
 package com.artillexstudios.axgraves.utils;
 
+import com.artillexstudios.axgraves.config.Settings;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 
-import static com.artillexstudios.axgraves.AxGraves.CONFIG;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LimitUtils {
+    // permissions can change without an event, so a cached limit is only trusted for a while
+    private static final long CACHE_MILLIS = 30_000;
+    private static final int NO_LIMIT_PERMISSION = Integer.MIN_VALUE;
+    private static final ConcurrentHashMap<UUID, CachedLimit> cache = new ConcurrentHashMap<>();
+    private static final Set<String> malformed = ConcurrentHashMap.newKeySet();
 
     public static int getGraveLimit(Player player) {
+        final long now = System.currentTimeMillis();
+        CachedLimit cached = cache.get(player.getUniqueId());
+        if (cached == null || now - cached.resolved > CACHE_MILLIS) {
+            cached = new CachedLimit(resolve(player), now);
+            cache.put(player.getUniqueId(), cached);
+        }
+
+        // without a permission the config decides, it may have been reloaded since
+        if (cached.limit == NO_LIMIT_PERMISSION) return Settings.get().graveLimit;
+        return cached.limit;
+    }
+
+    public static void invalidate(UUID player) {
+        cache.remove(player);
+    }
+
+    public static void invalidateAll() {
+        cache.clear();
+    }
+
+    private static int resolve(Player player) {
         int am = 0;
         boolean has = false;
 
         for (PermissionAttachmentInfo pai : player.getEffectivePermissions()) {
             if (!pai.getPermission().startsWith("axgraves.limit.")) continue;
-            int value = Integer.parseInt(pai.getPermission().replace("axgraves.limit.", ""));
+            final int value;
+            try {
+                value = Integer.parseInt(pai.getPermission().substring("axgraves.limit.".length()));
+            } catch (NumberFormatException ex) {
+                if (malformed.add(pai.getPermission())) {
+                    Bukkit.getLogger().warning("[AxGraves] Ignoring permission " + pai.getPermission() + ", the limit is not a number");
+                }
+                continue;
+            }
             am = Math.max(am, value);
             has = true;
         }
 
-        if (!has) return CONFIG.getInt("grave-limit", -1);
-        return am;
+        return has ? am : NO_LIMIT_PERMISSION;
+    }
+
+    private static class CachedLimit {
+        private final int limit;
+        private final long resolved;
+
+        private CachedLimit(int limit, long resolved) {
+            this.limit = limit;
+            this.resolved = resolved;
+        }
     }
 }
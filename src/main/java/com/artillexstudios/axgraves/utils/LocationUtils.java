@@ -1,6 +1,6 @@
 package com.artillexstudios.axgraves.utils;
 
-import com.artillexstudios.axapi.libs.boostedyaml.block.implementation.Section;
+import com.artillexstudios.axgraves.config.Settings;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
@@ -22,11 +22,11 @@ public class LocationUtils {
     }
 
     public static void clampLocation(Location location) {
-        Section section = CONFIG.getSection("spawn-height-limits." + location.getWorld().getName());
+        Settings.HeightLimit limit = Settings.get().getHeightLimit(location.getWorld().getName());
         double min, max;
-        if (section != null) {
-            min = section.getDouble("min");
-            max = section.getDouble("max");
+        if (limit != null) {
+            min = limit.min;
+            max = limit.max;
         } else {
             switch (location.getWorld().getEnvironment()) {
                 case NETHER, THE_END -> {
@@ -5,26 +5,114 @@ import com.artillexstudios.axapi.utils.ItemBuilder;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.profile.PlayerProfile;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
 import static com.artillexstudios.axgraves.AxGraves.CONFIG;
 
 public class Utils {
+    private static final int MAX_CACHED_HEADS = 512;
+    // the heads of the players that died most recently
+    private static final Map<UUID, ItemStack> heads = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ItemStack> eldest) {
+            return size() > MAX_CACHED_HEADS;
+        }
+    };
+    private static final ConcurrentHashMap<UUID, CompletableFuture<ItemStack>> resolving = new ConcurrentHashMap<>();
+    private static String customTexture = null;
+    private static ItemStack customHead = null;
 
     @NotNull
     public static ItemStack getPlayerHead(@NotNull OfflinePlayer player) {
-        ItemBuilder builder = ItemBuilder.create(Material.PLAYER_HEAD);
-
-        String texture = null;
-        if (CONFIG.getBoolean("custom-grave-skull.enabled", false)) {
-            texture = CONFIG.getString("custom-grave-skull.base64");
-        } else if (player.getPlayer() != null) {
-            ServerPlayerWrapper wrapper = ServerPlayerWrapper.wrap(player);
-            texture = wrapper.textures().texture();
+        return getPlayerHead(player, head -> {});
+    }
+
+    /**
+     * The head of a player, never waits for a profile lookup. The skin of an offline player that isn't cached yet is
+     * looked up in the background, the head is given to the callback once it is known, on an unspecified thread.
+     */
+    @NotNull
+    public static ItemStack getPlayerHead(@NotNull OfflinePlayer player, @NotNull Consumer<ItemStack> resolved) {
+        if (CONFIG.getBoolean("custom-grave-skull.enabled", false)) return getCustomHead(CONFIG.getString("custom-grave-skull.base64"));
+
+        final UUID id = player.getUniqueId();
+        synchronized (heads) {
+            final ItemStack cached = heads.get(id);
+            if (cached != null) return cached.clone();
+        }
+
+        if (player.getPlayer() != null) {
+            final ItemBuilder builder = ItemBuilder.create(Material.PLAYER_HEAD);
+            final String texture = ServerPlayerWrapper.wrap(player).textures().texture();
+            if (texture != null) builder.setTextureValue(texture);
+
+            final ItemStack head = builder.get();
+            cache(id, head);
+            return head.clone();
+        }
+
+        CompletableFuture<ItemStack> future = resolving.get(id);
+        if (future == null) {
+            final CompletableFuture<ItemStack> created = resolve(player);
+            future = resolving.putIfAbsent(id, created);
+            if (future == null) {
+                // only attached once stored, an already finished lookup would otherwise stay in the map
+                created.whenComplete((head, ex) -> resolving.remove(id, created));
+                future = created;
+            }
         }
+        future.thenAccept(head -> resolved.accept(head.clone()));
+        return new ItemStack(Material.PLAYER_HEAD);
+    }
+
+    /**
+     * Drops the cached head of a player, their skin may have changed.
+     */
+    public static void forgetHead(@NotNull UUID player) {
+        synchronized (heads) {
+            heads.remove(player);
+        }
+        resolving.remove(player);
+    }
 
-        if (texture != null) builder.setTextureValue(texture);
+    private static CompletableFuture<ItemStack> resolve(OfflinePlayer player) {
+        final PlayerProfile profile = player.getPlayerProfile();
+        return profile.update().handle((updated, ex) -> {
+            final ItemStack head = new ItemStack(Material.PLAYER_HEAD);
+            if (ex == null && updated != null) {
+                final SkullMeta meta = (SkullMeta) head.getItemMeta();
+                meta.setOwnerProfile(updated);
+                head.setItemMeta(meta);
+            }
+            // a failed lookup is cached as well, it would most likely fail again
+            cache(player.getUniqueId(), head);
+            return head;
+        });
+    }
 
-        return builder.get();
+    private static void cache(UUID player, ItemStack head) {
+        synchronized (heads) {
+            heads.put(player, head);
+        }
+    }
+
+    private static synchronized ItemStack getCustomHead(String texture) {
+        if (customHead == null || !Objects.equals(texture, customTexture)) {
+            final ItemBuilder builder = ItemBuilder.create(Material.PLAYER_HEAD);
+            if (texture != null) builder.setTextureValue(texture);
+            customHead = builder.get();
+            customTexture = texture;
+        }
+        return customHead.clone();
     }
 }
@@ -0,0 +1,94 @@
+package com.artillexstudios.axgraves.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class InventoryUtilsTest {
+    private static final List<String> ORDER = List.of("ARMOR", "HAND", "OFFHAND");
+
+    @BeforeAll
+    public static void setUp() {
+        if (Bukkit.getServer() != null) return;
+
+        // stacks without meta only need the factory to tell that there is none
+        final ItemFactory factory = (ItemFactory) Proxy.newProxyInstance(ItemFactory.class.getClassLoader(), new Class[]{ItemFactory.class}, (proxy, method, args) -> {
+            if (method.getName().equals("equals") && args != null && args.length == 2) return Objects.equals(args[0], args[1]);
+            return null;
+        });
+        final Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class[]{Server.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "getLogger" -> Logger.getLogger("InventoryUtilsTest");
+            case "getItemFactory" -> factory;
+            case "getName", "getVersion", "getBukkitVersion" -> "test";
+            default -> null;
+        });
+        Bukkit.setServer(server);
+    }
+
+    @Test
+    public void putsConfiguredSlotsFirst() {
+        final ItemStack helmet = new ItemStack(Material.DIAMOND_HELMET);
+        final ItemStack sword = new ItemStack(Material.DIAMOND_SWORD);
+        final ItemStack shield = new ItemStack(Material.SHIELD);
+        final ItemStack dirt = new ItemStack(Material.DIRT, 32);
+        final ItemStack moreDirt = new ItemStack(Material.DIRT, 64);
+
+        final List<ItemStack> kept = List.of(dirt, shield, moreDirt, sword, helmet);
+        final List<ItemStack> ordered = InventoryUtils.reorder(ORDER, new ItemStack[]{null, null, null, helmet.clone()}, sword.clone(), shield.clone(), kept);
+
+        assertEquals(5, ordered.size());
+        assertSame(helmet, ordered.get(0));
+        assertSame(sword, ordered.get(1));
+        assertSame(shield, ordered.get(2));
+        assertSame(dirt, ordered.get(3));
+        assertSame(moreDirt, ordered.get(4));
+    }
+
+    @Test
+    public void matchesAmountWithinType() {
+        final ItemStack few = new ItemStack(Material.ARROW, 3);
+        final ItemStack many = new ItemStack(Material.ARROW, 64);
+
+        final List<ItemStack> ordered = InventoryUtils.reorder(ORDER, new ItemStack[4], null, new ItemStack(Material.ARROW, 64), List.of(few, many));
+
+        assertSame(many, ordered.get(0));
+        assertSame(few, ordered.get(1));
+    }
+
+    // not an assertion, prints how long a full inventory of mostly unrelated stacks takes to reorder
+    @Test
+    public void timeFullInventory() {
+        final Material[] materials = Material.values();
+        final List<ItemStack> kept = new ArrayList<>();
+        for (int i = 0; kept.size() < 41; i++) {
+            final Material material = materials[i * 7 % materials.length];
+            if (!material.isItem() || material.isAir() || material.isLegacy()) continue;
+            kept.add(new ItemStack(material, 1 + i % material.getMaxStackSize()));
+        }
+        final ItemStack[] armor = {kept.get(3).clone(), kept.get(10).clone(), kept.get(20).clone(), kept.get(30).clone()};
+        final ItemStack hand = kept.get(40).clone();
+        final ItemStack offHand = kept.get(0).clone();
+
+        final int runs = 100_000;
+        for (int i = 0; i < runs; i++) InventoryUtils.reorder(ORDER, armor, hand, offHand, kept);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) InventoryUtils.reorder(ORDER, armor, hand, offHand, kept);
+        final long took = System.nanoTime() - start;
+
+        System.out.println("reorder of " + kept.size() + " stacks took " + took / runs + "ns on average");
+    }
+}